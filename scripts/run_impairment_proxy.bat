@@ -0,0 +1,5 @@
+@echo off
+echo Starting impairment proxy (clients: -Dudp.server.port=6000)...
+cd ..
+java -cp out/production/Rrjeta_Kompiuterike_Gr12 tools.ImpairmentProxy listen=6000 target=127.0.0.1:5000 profile=wifi seed=42
+pause
@@ -1,5 +1,6 @@
 package client;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.Scanner;
@@ -7,12 +8,38 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+import server.DeltaSync;
+import server.FileCatalog;
+import server.FileCommandHandler;
 
 import static server.ServerConfig.*;
 
 public class AdminClient extends BaseClient {
 
+    private static final int RANGE_RETRIES = 3;
+    private static final int BULK_DOWNLOAD_WORKERS = 4;
+    private static final int BULK_DOWNLOAD_SPARE_SESSIONS = 2;   // sesione qe shkarkimi paralel ua le te tjereve
+    private static final String STATS_ACTIVE_CONNECTIONS = "Active connections:";
+    private static final Pattern NAME_TOKEN = Pattern.compile("\"([^\"]+)\"|(\\S+)");
+
     public AdminClient(int clientId) {
         super(clientId);
     }
@@ -23,6 +50,7 @@ public class AdminClient extends BaseClient {
             System.out.println("=== ADMIN CLIENT (ID = " + clientId + ") ===");
             sendHello(String.valueOf(Permission.ADMIN));
             System.out.println(receiveResponse());
+            announceDatagramSize();
             printMenu();
 
             while (true) {
@@ -38,9 +66,18 @@ public class AdminClient extends BaseClient {
                     System.out.println("Po dal nga klienti...");
                     break;
                 }
-                if (input.equalsIgnoreCase(CMD_STATS)) {
-                    sendMessage(CMD_STATS);
+                if (input.toUpperCase().startsWith(CMD_LOGS + " ")) {
+                    sendMessage(CMD_LOGS + input.substring(CMD_LOGS.length()));
+                    System.out.println(receiveResponse());
+                    continue;
+                }
+                if (input.equalsIgnoreCase(CMD_STATS) || input.toUpperCase().startsWith(CMD_STATS + " HISTORY")) {
+                    sendMessage(input.toUpperCase());
                     System.out.println(receiveResponse());
+                    if (input.equalsIgnoreCase(CMD_STATS)) {
+                        System.out.println(retransmitTimer.describe());
+                        System.out.println(pathMtu.describe());
+                    }
                     continue;
                 }
                 executeCommand(input);
@@ -54,29 +91,35 @@ public class AdminClient extends BaseClient {
     }
     public void printMenu(){
         System.out.println("Komandat:");
-        System.out.println("/list");
+        System.out.println("/list [-r [<dir>]] [limit=<n>] [cursor=<c>] [fields=name,size,mtime]");
+        System.out.println("/du [<dir>] (file-t dhe bajtet e nje direktoriumi)");
         System.out.println("/read <filename>");
         System.out.println("/upload <filename>");
-        System.out.println("/download <filename>");
+        System.out.println("/sync <filename> (delta upload, dergon vetem blloqet e ndryshuara)");
+        System.out.println("/download <filename> | /download \"<f1>\" \"<f2>\" ... | /download <glob> (p.sh. *.txt, paralelisht)");
+        System.out.println("/fec [1..8 | off] (paritet XOR per shkarkimet ne rrjete me humbje)");
         System.out.println("/delete <filename>");
-        System.out.println("/search <keyword>");
+        System.out.println("/search <keyword> [limit=<n>] [cursor=<c>]");
         System.out.println("/info <filename>");
+        System.out.println("/watch [sekonda] (ngjarjet e server_files pa polling)");
+        System.out.println("/batch <script> (shume komanda ne pak datagrame, nje komande per rresht)");
         System.out.println("stats (komande pa slash per statistikat e serverit)");
+        System.out.println("stats history <dritarja> (p.sh. 60s, 15m, 6h, 7d)");
+        System.out.println("logs <clientId> [<dritarja> | <from ISO> <to ISO>] (mesazhet e nje klienti)");
         System.out.println(CMD_EXIT + " ose exit për ta mbyllur klientin"); // duhet me konfiguru cmd_exit ne serverconfig hala spodi cka me vendos
         System.out.println("--------------------------------------");
     }
 
     private void executeCommand(String input) {
         try {
-            if (input.equals(CMD_LIST)) {
-                sendTextCommand(CMD_LIST);
+            if (input.equals(CMD_LIST) || input.startsWith(CMD_LIST + " ")) {
+                sendTextCommand(input);
                 System.out.println(receiveResponse());
             }
 
             else if (input.startsWith(CMD_READ + " ")) {
                 String file = input.substring(CMD_READ.length() + 1).trim();
-                sendMessage(CMD_READ + " " + quoteIfNeeded(file));
-                System.out.println(receiveResponse());
+                System.out.println(readWithCache(file));
             }
 
             else if (input.startsWith(CMD_DELETE + " "))  {
@@ -86,21 +129,40 @@ public class AdminClient extends BaseClient {
             }
 
             else if (input.startsWith(CMD_SEARCH + " ")) {
-                String key = input.substring(CMD_SEARCH.length() + 1).trim();
-                sendMessage(CMD_SEARCH + " " + quoteIfNeeded(key));
+                sendMessage(searchCommand(input.substring(CMD_SEARCH.length() + 1)));
                 System.out.println(receiveResponse());
             }
 
             else if (input.startsWith(CMD_INFO + " ")) {
                 String file = input.substring(CMD_INFO.length() + 1).trim();
-                sendMessage(CMD_INFO + " " + quoteIfNeeded(file));
+                System.out.println(requestForFile(CMD_INFO + " " + quoteIfNeeded(file), file));
+            }
+
+            else if (input.startsWith(CMD_BATCH + " ")) {
+                runBatch(input.substring(CMD_BATCH.length() + 1).trim());
+            }
+
+            else if (input.equals(CMD_FEC) || input.startsWith(CMD_FEC + " ")) {
+                configureFec(input);
+            }
+
+            else if (input.equals(CMD_DU) || input.startsWith(CMD_DU + " ")) {
+                sendTextCommand(input);
                 System.out.println(receiveResponse());
             }
 
+            else if (input.equals(CMD_WATCH) || input.startsWith(CMD_WATCH + " ")) {
+                watchChanges(input);
+            }
+
             else if (input.startsWith(CMD_UPLOAD + " ")) {
                 uploadFile(input.substring(CMD_UPLOAD.length() + 1).trim());
             }
 
+            else if (input.startsWith(CMD_SYNC + " ")) {
+                syncFile(input.substring(CMD_SYNC.length() + 1).trim());
+            }
+
             else if (input.startsWith(CMD_DOWNLOAD + " "))  {
                 String file = input.substring(CMD_DOWNLOAD.length() + 1).trim();
                 handleDownload(file);
@@ -130,43 +192,425 @@ public class AdminClient extends BaseClient {
                 return;
             }
             sendMessage(payload);
-            System.out.println(receiveResponse());
+            String response = receiveResponse();
+            System.out.println(response);
+            String expected = "crc32c=" + String.format("%08x", FileCatalog.crc32c(bytes));
+            if (response.startsWith("OK") && response.contains("crc32c=") && !response.contains(expected)) {
+                System.out.println("Kujdes: checksum-i i serverit nuk përputhet me file-in lokal (" + expected + "); ridërgoje.");
+            }
         }catch(Exception e){
             System.out.println("Gabim ne upload: " + e.getMessage());
         }
     }
-    private void handleDownload(String file) {
-        sendMessage(CMD_DOWNLOAD + " " + quoteIfNeeded(file));
-        String response = receiveResponse();
-        if (response.startsWith("DATA_BASE64")) {
-            persistDownloadedFile(response);
-        } else {
-            System.out.println(response);
+    // /batch <script>: çdo rresht i script-it eshte nje komande; dergohen te grupuara ne pak datagrame
+    private void runBatch(String scriptPath) {
+        try {
+            List<String> commands = Files.readAllLines(Path.of(scriptPath), StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .toList();
+            if (commands.isEmpty()) {
+                System.out.println("Script-i nuk ka komanda.");
+                return;
+            }
+            long started = System.nanoTime();
+            List<String> results = sendBatch(commands);
+            for (int i = 0; i < commands.size(); i++) {
+                System.out.println(">> " + commands.get(i));
+                System.out.println(i < results.size() ? results.get(i) : "ERR pa pergjigje");
+            }
+            System.out.printf("%d komanda në %d ms%n", commands.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            System.out.println("Nuk u lexua script-i: " + e.getMessage());
+        }
+    }
+
+    // delta upload: merr nenshkrimet nga serveri dhe dergon vetem ndryshimet
+    private void syncFile(String filename) {
+        File file = new File(filename);
+        if (!file.exists() || !file.isFile()) {
+            System.out.println("File nuk ekziston!");
+            return;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            // nenshkrimet vijne ne faqe (start=/next=) qe secila te hyje ne nje datagram
+            DeltaSync.Signature signature = null;
+            List<DeltaSync.BlockSignature> blocks = new ArrayList<>();
+            int start = 0;
+            while (start >= 0) {
+                sendMessage(CMD_SIGNATURE + " " + quoteIfNeeded(file.getName()) + " start=" + start);
+                String response = receiveResponse();
+                DeltaSync.Signature page = DeltaSync.parseSignature(response);
+                if (page == null && signature == null) {
+                    System.out.println("Serveri nuk ka version te meparshem (" + response.lines().findFirst().orElse("") + "), po dergoj file-in e plote.");
+                    uploadFile(filename);
+                    return;
+                }
+                if (page == null || (signature != null
+                        && (page.size() != signature.size() || page.blockSize() != signature.blockSize()))) {
+                    System.out.println("File-i në server ndryshoi gjatë leximit të nënshkrimeve; provo përsëri.");
+                    return;
+                }
+                signature = page;
+                blocks.addAll(page.blocks());
+                int next = DeltaSync.nextSignatureBlock(response);
+                start = next > start ? next : -1;
+            }
+            signature = new DeltaSync.Signature(signature.blockSize(), signature.size(), blocks);
+            byte[] delta = DeltaSync.computeDelta(bytes, signature);
+            String payload = CMD_PATCH + " " + quoteIfNeeded(file.getName()) + " "
+                    + Base64.getEncoder().encodeToString(delta);
+            int payloadSize = payload.getBytes(StandardCharsets.UTF_8).length;
+            if (payloadSize > BUFFER_SIZE) {
+                System.out.println("Delta është shumë e madhe për një paketë UDP (" + payloadSize + " > " + BUFFER_SIZE + " bajte).");
+                return;
+            }
+            sendMessage(payload);
+            System.out.println(receiveResponse());
+            System.out.println("Delta: " + delta.length + " bajte në vend të " + bytes.length + " bajteve.");
+        } catch (Exception e) {
+            System.out.println("Gabim ne sync: " + e.getMessage());
+        }
+    }
+
+    // /download "a.txt" "b.txt" | /download *.txt -> disa shkarkime paralelisht, secili me socket-in e vet
+    private void handleDownload(String input) {
+        List<String> names = splitNames(input);
+        boolean glob = names.stream().anyMatch(n -> n.contains("*") || n.contains("?"));
+        if (names.size() == 1 && !glob) {
+            downloadFile(names.get(0));
+            return;
+        }
+        List<String> files = glob ? expandGlobs(names) : names;
+        if (files.isEmpty()) {
+            System.out.println("Asnjë file në server nuk përputhet me " + input);
+            return;
+        }
+        bulkDownload(files);
+    }
+
+    // workeri i pare perdor sesionin e ketij klienti; te tjeret hapin sesione vetem sa lejon buxheti i serverit,
+    // duke lene BULK_DOWNLOAD_SPARE_SESSIONS te lira per klientet e tjere, dhe i mbyllin me /exit ne fund
+    private void bulkDownload(List<String> files) {
+        int extraSessions = Math.min(Math.min(BULK_DOWNLOAD_WORKERS, files.size()) - 1, freeSessionBudget());
+        int workers = 1 + Math.max(0, extraSessions);
+        Queue<String> queue = new ConcurrentLinkedQueue<>(files);
+        AtomicLong bytes = new AtomicLong();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> results = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < workers; i++) {
+            boolean own = i > 0;
+            results.add(pool.submit(() -> {
+                AdminClient worker = this;
+                try {
+                    if (own) {
+                        worker = new AdminClient(clientId);
+                        worker.fecGroupSize = fecGroupSize;
+                        worker.retransmitTimer = retransmitTimer;
+                        worker.pathMtu = pathMtu;
+                        worker.sendHello(String.valueOf(Permission.ADMIN));
+                        String hello = worker.receiveResponse();
+                        if (!hello.startsWith("HELLO")) {
+                            return null; // serveri plot: file-t i marrin workerat e tjere
+                        }
+                        worker.announceDatagramSize();
+                    }
+                    String file;
+                    while ((file = queue.poll()) != null) {
+                        long downloaded = worker.downloadFile(file);
+                        if (downloaded < 0) {
+                            failed.incrementAndGet();
+                        } else {
+                            bytes.addAndGet(downloaded);
+                        }
+                    }
+                    return null;
+                } finally {
+                    if (own) {
+                        worker.sendMessage(CMD_EXIT);
+                        worker.close();
+                    }
+                }
+            }));
+        }
+        pool.shutdown();
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                failed.incrementAndGet(); // file-i qe po shkarkohej
+                System.out.println("Një worker dështoi: " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // file-t qe mbeten kur te gjithe workerat deshtuan
+        failed.addAndGet(queue.size());
+        double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+        System.out.printf("Shkarkuar %d/%d file, %d bajte në %.2f s (%.1f KB/s, %d workera)%n",
+                Math.max(0, files.size() - failed.get()), files.size(), bytes.get(), seconds,
+                bytes.get() / 1024.0 / seconds, workers);
+    }
+
+    // sa sesione shtese mund te hapen pa i zene serverit vendet per klientet e tjere; 0 kur STATS s'pergjigjet
+    private int freeSessionBudget() {
+        sendMessage(CMD_STATS);
+        String stats = receiveResponse();
+        for (String line : stats.lines().toList()) {
+            if (line.startsWith(STATS_ACTIVE_CONNECTIONS)) {
+                try {
+                    int active = Integer.parseInt(line.substring(STATS_ACTIVE_CONNECTIONS.length()).trim());
+                    return Math.max(0, MAX_CLIENTS - active - BULK_DOWNLOAD_SPARE_SESSIONS);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private List<String> expandGlobs(List<String> patterns) {
+        List<String> listing = listAll();
+        List<PathMatcher> matchers = patterns.stream()
+                .map(p -> FileSystems.getDefault().getPathMatcher("glob:" + p))
+                .toList();
+        return listing.stream()
+                .filter(name -> !name.endsWith("/")) // direktoriumet nuk shkarkohen
+                .filter(name -> matchers.stream().anyMatch(m -> m.matches(Path.of(name))))
+                .toList();
+    }
+
+    // pa thonjeza dhe pa * ose ? i gjithe argumenti eshte nje emer ("/download my file.txt");
+    // perndryshe emrat ndahen me hapesira dhe ata me hapesira shkruhen me thonjeza
+    private List<String> splitNames(String input) {
+        if (input.indexOf('"') < 0 && input.indexOf('*') < 0 && input.indexOf('?') < 0) {
+            return List.of(input.trim());
+        }
+        List<String> names = new ArrayList<>();
+        Matcher matcher = NAME_TOKEN.matcher(input);
+        while (matcher.find()) {
+            names.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
         }
+        return names;
     }
-    private void persistDownloadedFile(String response) {
+
+    // shkarkim ne pjese (range); nese ekziston <file>.part vazhdon pas verifikimit te prefiksit.
+    // File-t ne nen-direktoriume ruhen me te njejten shtege relative, qe emrat e njejte te mos perplasen
+    private long downloadFile(String file) {
+        Path downloadDir = Path.of("data", "client_downloads").toAbsolutePath().normalize();
+        Path target = downloadDir.resolve(file.replace("\"", "").trim()).normalize();
+        if (!target.startsWith(downloadDir) || target.equals(downloadDir)) {
+            System.out.println("Emër i pavlefshëm file-i: " + file);
+            return -1;
+        }
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            Files.createDirectories(target.getParent());
+            long offset = Files.exists(partial) ? Files.size(partial) : 0;
+            String verify = null;
+            if (offset > 0) {
+                try (var in = Files.newInputStream(partial)) {
+                    verify = FileCommandHandler.sha256Prefix(in, offset);
+                }
+                System.out.println("U gjet shkarkim i pjesshëm (" + offset + " bajte), po vazhdoj...");
+            }
+            long total = -1;
+            int corruptChunks = 0;
+            String fileCrc = null;
+            while (total < 0 || offset < total) {
+                if (fecGroupSize > 0 && verify == null) {
+                    FecGroup group = fetchFecGroup(file, offset);
+                    if (group != null) {
+                        total = group.total();
+                        fileCrc = group.fileCrc();
+                        for (int i = 0; i < group.shards().length; i++) {
+                            byte[] shard = group.shards()[i];
+                            if (shard == null) {
+                                // me shume se nje pjese e humbur ne grup: kerkohet vetem ajo pjese, ne disa
+                                // pergjigje range nese serveri e kufizon gjatesine nen madhesine e pjeses
+                                int expected = (int) Math.min(group.shardSize(), group.total() - offset);
+                                ByteArrayOutputStream rebuilt = new ByteArrayOutputStream(expected);
+                                while (rebuilt.size() < expected) {
+                                    long at = offset + rebuilt.size();
+                                    RangeChunk chunk = parseRangeChunk(requestRange(CMD_DOWNLOAD + " " + quoteIfNeeded(file)
+                                            + " offset=" + at + " length=" + (expected - rebuilt.size()), file, pathMtu.size()));
+                                    if (chunk == null || chunk.offset() != at || chunk.data().length == 0) {
+                                        System.out.println("Shkarkimi u ndërpre në " + offset + " bajte; rishkruaj " + CMD_DOWNLOAD + " për ta vazhduar.");
+                                        return -1;
+                                    }
+                                    rebuilt.write(chunk.data(), 0, Math.min(chunk.data().length, expected - rebuilt.size()));
+                                }
+                                noteFecRetransmission();
+                                shard = rebuilt.toByteArray();
+                            }
+                            Files.write(partial, shard, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                            offset += shard.length;
+                        }
+                        continue;
+                    }
+                }
+                String response = requestChunk(file, offset, verify);
+                announceDatagramSize();
+                if (response.startsWith("ERR Prefix mismatch") || response.startsWith("ERR Offset beyond")) {
+                    System.out.println("Pjesa e shkarkuar nuk përputhet me serverin, po filloj nga e para.");
+                    Files.deleteIfExists(partial);
+                    offset = 0;
+                    verify = null;
+                    continue;
+                }
+                if (response.startsWith("DATA_BASE64")) {
+                    return persistDownloadedFile(response, target);
+                }
+                RangeChunk chunk = parseRangeChunk(response);
+                if (chunk == null) {
+                    System.out.println(response);
+                    if (offset > 0) {
+                        System.out.println("Shkarkimi u ndërpre në " + offset + " bajte; rishkruaj " + CMD_DOWNLOAD + " për ta vazhduar.");
+                    }
+                    return -1;
+                }
+                if (chunk.offset() != offset) {
+                    continue; // pergjigje e vonuar nga nje kerkese e meparshme
+                }
+                if (chunk.crc() != null && !chunk.crc().equals(String.format("%08x", FileCatalog.crc32c(chunk.data())))) {
+                    if (++corruptChunks > RANGE_RETRIES) {
+                        System.out.println("Pjesa në " + offset + " mbërriti e dëmtuar disa herë; shkarkimi u ndal.");
+                        return -1;
+                    }
+                    continue; // kerkohet perseri e njejta pjese
+                }
+                corruptChunks = 0;
+                fileCrc = chunk.fileCrc();
+                verify = null;
+                total = chunk.total();
+                Files.write(partial, chunk.data(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                offset += chunk.data().length;
+                if (chunk.data().length == 0 && offset < total) {
+                    System.out.println("Serveri ktheu pjesë bosh; shkarkimi u ndal në " + offset + " bajte.");
+                    return -1;
+                }
+            }
+            if (!Files.exists(partial)) {
+                Files.createFile(partial); // file bosh
+            }
+            if (fileCrc != null && !fileCrc.equals(crc32cOf(partial))) {
+                Files.deleteIfExists(partial);
+                System.out.println("Checksum-i i file-it të shkarkuar nuk përputhet me serverin (crc32c=" + fileCrc + "); provo përsëri.");
+                return -1;
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("File u shkarkua tek " + target.toAbsolutePath() + " (" + total + " bajte)");
+            return total;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Nuk u arrit të ruhej file-i: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // pjesa mbushet deri ne madhesine e datagramit; here pas here kerkohet me madhesine e radhes si prove,
+    // dhe nese prova humbet e njejta pjese kerkohet menjehere me madhesine e konfirmuar
+    private String requestChunk(String file, long offset, String verify) {
+        int datagramSize = pathMtu.nextSize();
+        if (datagramSize > pathMtu.size()) {
+            markNextRequestAsProbe();
+            String response = requestForFile(chunkRequest(file, offset, datagramSize, verify), file);
+            boolean timedOut = response.startsWith("ERR Server nuk u përgjigj");
+            pathMtu.onReply(datagramSize, timedOut || lastRequestRetransmitted());
+            if (!timedOut) {
+                return response;
+            }
+            datagramSize = pathMtu.size();
+        }
+        return requestRange(chunkRequest(file, offset, datagramSize, verify), file, datagramSize);
+    }
+
+    private String chunkRequest(String file, long offset, int datagramSize, String verify) {
+        int length = Math.min(RANGE_CHUNK_SIZE, payloadForDatagram(datagramSize, file.getBytes(StandardCharsets.UTF_8).length));
+        return CMD_DOWNLOAD + " " + quoteIfNeeded(file) + " offset=" + offset + " length=" + length
+                + (verify != null ? " verify=" + verify : "");
+    }
+
+    // riprovon te njejten pjese disa here para se ta ndaloje shkarkimin; humbjet i raportohen PathMtu
+    private String requestRange(String request, String file, int datagramSize) {
+        String response = "";
+        for (int attempt = 0; attempt < RANGE_RETRIES; attempt++) {
+            response = requestForFile(request, file);
+            if (!response.startsWith("ERR Server nuk u përgjigj")) {
+                pathMtu.onReply(datagramSize, attempt > 0 || lastRequestRetransmitted());
+                return response;
+            }
+        }
+        pathMtu.onReply(datagramSize, true);
+        return response;
+    }
+
+    private RangeChunk parseRangeChunk(String response) {
+        if (!response.startsWith("DATA_RANGE")) {
+            return null;
+        }
+        String[] parts = response.replace("\r", "").split("\n", 6);
+        if (parts.length < 6) {
+            return null;
+        }
+        long offset = Long.parseLong(parts[2].replaceFirst("offset=", "").trim());
+        long total = Long.parseLong(parts[4].replaceFirst("total=", "").trim());
+        byte[] data = Base64.getDecoder().decode(parts[5].trim());
+        return new RangeChunk(offset, total, data, headerValue(parts[0], "crc32c"), headerValue(parts[0], "file-crc32c"));
+    }
+
+    // "DATA_RANGE crc32c=.. file-crc32c=.." -> vlera e çelesit, ose null per serverat pa checksum
+    private static String headerValue(String header, String key) {
+        for (String token : header.split(" ")) {
+            if (token.startsWith(key + "=")) {
+                return token.substring(key.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String crc32cOf(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[8192];
+        try (var in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return String.format("%08x", crc.getValue());
+    }
+    private long persistDownloadedFile(String response, Path target) {
         String normalized = response.replace("\r", "");
         String[] parts = normalized.split("\n", 4);
         if (parts.length < 4) {
             System.out.println(response);
-            return;
+            return -1;
         }
-        String filenameLine = parts[1];
         String payload = parts[3].trim();
-        String filename = filenameLine.replaceFirst("filename=", "").trim();
-        Path downloadDir = Path.of("data", "client_downloads");
         try {
-            Files.createDirectories(downloadDir);
             byte[] bytes = Base64.getDecoder().decode(payload);
-            Path target = downloadDir.resolve(filename);
+            String expectedCrc = headerValue(parts[0], "crc32c");
+            if (expectedCrc != null && !expectedCrc.equals(String.format("%08x", FileCatalog.crc32c(bytes)))) {
+                System.out.println("Checksum-i nuk përputhet (crc32c=" + expectedCrc + "); file-i nuk u ruajt.");
+                return -1;
+            }
             Files.write(target, bytes);
             System.out.println("File u shkarkua tek " + target.toAbsolutePath());
+            return bytes.length;
         } catch (IOException | IllegalArgumentException e) {
             System.out.println("Nuk u arrit të ruhej file-i: " + e.getMessage());
+            return -1;
         }
     }
 
 
+    private record RangeChunk(long offset, long total, byte[] data, String crc, String fileCrc) {
+    }
+
     public static void main(String[] args) {
         int clientId = 1;
 
@@ -1,4 +1,7 @@
 package client;
+import server.BatchProtocol;
+import server.FecCodec;
+import server.RequestEnvelope;
 import server.ServerConfig;
 import java.io.Closeable;
 import java.io.IOException;
@@ -6,8 +9,21 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import server.ServerConfig;
 import java.io.Closeable;
 import java.io.IOException;
@@ -16,12 +32,31 @@ import static server.ServerConfig.*;
 
 public abstract class BaseClient implements Closeable {
     public static final int BUFFER_SIZE = ServerConfig.BUFFER_SIZE;
+    private static final Pattern PAGE_OPTIONS = Pattern.compile("(\\s+(limit|cursor|fields)=\\S+)+$");
     protected final int clientId;
     protected final String clientIdentifier;
     protected final InetAddress serverAddress;
     protected final int serverPort;
     protected final DatagramSocket socket;
-    private static final int SOCKET_TIMEOUT_MS = 5_000;
+    private final ConsistentHashRing replicaRing;
+    private final Set<InetSocketAddress> greetedReplicas = ConcurrentHashMap.newKeySet();
+    private volatile String helloRole;
+    private final Map<String, CachedRead> readCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long readCacheBytes;
+    private static final int SOCKET_TIMEOUT_MS = 5_000;   // afati i nje kerkese, bashke me ritransmetimet
+    protected RetransmitTimer retransmitTimer = new RetransmitTimer();
+    protected PathMtu pathMtu = new PathMtu();
+    private int announcedMtu;
+    private long requestCounter;
+    private PendingRequest pending;
+    private boolean probeNext;
+    protected volatile int fecGroupSize;
+    private volatile boolean acceptFec;
+    private final AtomicLong fecRecovered = new AtomicLong();
+    private final AtomicLong fecRetransmitted = new AtomicLong();
+    private static final int DEFAULT_WATCH_SECONDS = 60;
+    private static final int READ_CACHE_MAX_ENTRIES = 128;
+    private static final long READ_CACHE_MAX_CHARS = 4L * 1024 * 1024;
 
     protected enum Permission {
         ADMIN("ADMIN"),
@@ -50,6 +85,7 @@ public abstract class BaseClient implements Closeable {
             this.serverPort = ServerConfig.resolveServerPort();
             this.socket = new DatagramSocket();
             this.socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+            this.replicaRing = new ConsistentHashRing(ServerConfig.resolveClusterNodes());
         } catch (Exception e) {
             throw new IllegalStateException("Nuk mund të inicializohet klienti: " + e.getMessage(), e);
         }
@@ -75,31 +111,365 @@ public abstract class BaseClient implements Closeable {
             return;
         }
         try {
-            byte[] data = message.getBytes(StandardCharsets.UTF_8);
-            DatagramPacket packet = new DatagramPacket(
-                    data, data.length, serverAddress, serverPort
-            );
-
-            socket.send(packet);
-
+            sendRequest(message, new InetSocketAddress(serverAddress, serverPort));
         } catch (Exception e) {
             System.out.println("Error sending packet: " + e.getMessage());
         }
     }
     protected void sendTextCommand(String text) throws IOException {
-        byte[] data = text.getBytes(StandardCharsets.UTF_8);
-        DatagramPacket packet = new DatagramPacket(
-                data,
-                data.length,
-                serverAddress,
-                serverPort
-        );
-        socket.send(packet);
+        sendRequest(text, new InetSocketAddress(serverAddress, serverPort));
     }
     protected void sendHello(String roleKeyword){
+        helloRole = roleKeyword;
+        announcedMtu = 0; // sesion i ri ne server
         sendMessage("HELLO " + getClientIdentifier() + " " + roleKeyword);
     }
 
+    // ================== KLASTERI: LEXIMET NEPER REPLIKA ==================
+    // kerkesat e leximit per nje file shkojne te nyja qe i takon ne unaze; shkrimet mbeten te serveri primar
+    protected String requestForFile(String command, String fileName) {
+        InetSocketAddress replica = replicaRing.nodeFor(fileName.replace("\"", "").trim());
+        if (replica == null || isPrimary(replica)) {
+            sendMessage(command);
+            return receiveResponse();
+        }
+        if (greetedReplicas.add(replica)) {
+            sendTo("HELLO " + getClientIdentifier() + " " + helloRole, replica);
+            receiveResponse();
+        }
+        sendTo(command, replica);
+        String response = receiveResponse();
+        if (response.startsWith("ERR Ju lutem identifikohuni")) {
+            // sesioni ne replike ka skaduar
+            sendTo("HELLO " + getClientIdentifier() + " " + helloRole, replica);
+            receiveResponse();
+            sendTo(command, replica);
+            response = receiveResponse();
+        }
+        if (response.startsWith("ERR Server nuk u përgjigj")) {
+            greetedReplicas.remove(replica);
+            sendMessage(command); // replika s'pergjigjet, provo primarin
+            response = receiveResponse();
+        }
+        return response;
+    }
+
+    // ================== MADHESIA E DATAGRAMEVE ==================
+    // madhesia e konfirmuar i njoftohet serverit kur ndryshon; faqet, batch-i dhe pjeset FEC ndahen sipas saj
+    protected void announceDatagramSize() {
+        int size = pathMtu.size();
+        if (size == announcedMtu) {
+            return;
+        }
+        sendMessage(CMD_MTU + " " + size);
+        if (receiveResponse().startsWith("OK mtu=")) {
+            announcedMtu = size;
+        }
+    }
+
+    // sinjali i humbjes per PathMtu: pergjigjja e kerkeses se fundit erdhi vetem pas ritransmetimit
+    protected boolean lastRequestRetransmitted() {
+        return pending != null && pending.retransmitted;
+    }
+
+    // kerkesa e radhes eshte prove e PathMtu: afat i shkurter ne vend te SOCKET_TIMEOUT_MS
+    protected void markNextRequestAsProbe() {
+        probeNext = true;
+    }
+
+    // ================== BATCH ==================
+    // shume komanda ne pak datagrame; kthen rezultatet ne rendin e komandave
+    protected List<String> sendBatch(List<String> commands) {
+        List<String> results = new ArrayList<>();
+        for (String request : BatchProtocol.encodeRequests(commands, BUFFER_SIZE)) {
+            int count = BatchProtocol.parseRequest(request).size();
+            String[] partResults = new String[count];
+            sendMessage(request);
+            int expectedParts = -1;
+            int receivedParts = 0;
+            while (expectedParts < 0 || receivedParts < expectedParts) {
+                String response = receiveResponse();
+                BatchProtocol.Part part = BatchProtocol.parseResultPart(response);
+                if (part == null) {
+                    // ERR e gjithe batch-it ose timeout: i njejti rezultat per komandat pa pergjigje
+                    for (int i = 0; i < count; i++) {
+                        if (partResults[i] == null) {
+                            partResults[i] = response;
+                        }
+                    }
+                    break;
+                }
+                expectedParts = part.parts();
+                receivedParts++;
+                for (BatchProtocol.Frame frame : part.frames()) {
+                    if (frame.index() >= 0 && frame.index() < count) {
+                        partResults[frame.index()] = frame.result();
+                    }
+                }
+            }
+            results.addAll(Arrays.asList(partResults));
+        }
+        return results;
+    }
+
+    // ================== FEC PER SHKARKIMET ==================
+    // nje grup: k pjese te dhenash + paritet; nje pjese e humbur rindertohet lokalisht me XOR,
+    // pjeset qe mbeten null duhen kerkuar perseri nga thirresi
+    protected record FecGroup(long offset, long total, String fileCrc, int shardSize, byte[][] shards) {
+    }
+
+    protected FecGroup fetchFecGroup(String file, long offset) {
+        String command = CMD_DOWNLOAD + " " + quoteIfNeeded(file) + " offset=" + offset + " fec=" + fecGroupSize;
+        acceptFec = true;
+        try {
+            FecCodec.Shard first = FecCodec.parse(requestForFile(command, file));
+            while (first != null && first.groupOffset() != offset) {
+                first = FecCodec.parse(receiveResponse()); // pjese e vonuar nga grupi i meparshem
+            }
+            if (first == null) {
+                return null;
+            }
+            byte[][] shards = new byte[first.count()][];
+            byte[] parity = null;
+            int received = 0;
+            for (FecCodec.Shard shard = first; ; ) {
+                if (shard != null && shard.groupOffset() == offset && shard.count() == shards.length) {
+                    if (shard.isParity() && parity == null) {
+                        parity = shard.data();
+                        received++;
+                    } else if (!shard.isParity() && shards[shard.index()] == null) {
+                        shards[shard.index()] = shard.data();
+                        received++;
+                    }
+                }
+                if (received == shards.length + 1) {
+                    break;
+                }
+                String next = receiveResponse();
+                if (next.startsWith("ERR Server nuk u përgjigj")) {
+                    break; // pjeset qe mungojne kane humbur
+                }
+                shard = FecCodec.parse(next);
+            }
+            int missing = -1;
+            int missingCount = 0;
+            for (int i = 0; i < shards.length; i++) {
+                if (shards[i] == null) {
+                    missing = i;
+                    missingCount++;
+                }
+            }
+            if (missingCount == 1 && parity != null) {
+                shards[missing] = FecCodec.recover(shards, parity, missing, offset, first.shardSize(), first.total());
+                fecRecovered.incrementAndGet();
+            }
+            return new FecGroup(offset, first.total(), first.fileCrc(), first.shardSize(), shards);
+        } finally {
+            acceptFec = false;
+        }
+    }
+
+    protected void noteFecRetransmission() {
+        fecRetransmitted.incrementAndGet();
+    }
+
+    // /fec [k|off]: madhesia e grupit per kete sesion, ose numeruesit kur jepet pa argument
+    protected void configureFec(String input) {
+        String argument = input.substring(CMD_FEC.length()).trim();
+        if (!argument.isEmpty()) {
+            try {
+                fecGroupSize = argument.equalsIgnoreCase("off") ? 0
+                        : Math.max(0, Math.min(FEC_MAX_GROUP, Integer.parseInt(argument)));
+            } catch (NumberFormatException e) {
+                System.out.println("Përdorimi: " + CMD_FEC + " [1.." + FEC_MAX_GROUP + " | off]");
+                return;
+            }
+        }
+        System.out.println("FEC: " + (fecGroupSize > 0 ? "1 paritet për " + fecGroupSize + " pjesë" : "joaktiv")
+                + ", rindërtuar " + fecRecovered.get() + ", ritransmetuar " + fecRetransmitted.get());
+    }
+
+    // ================== LISTIMI ME FAQE ==================
+    // merr te gjithe emrat faqe pas faqeje, duke ndjekur cursor-in next= qe kthen serveri
+    protected List<String> listAll() {
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        do {
+            sendMessage(CMD_LIST + " limit=" + PAGE_MAX_LIMIT + (cursor != null ? " cursor=" + cursor : ""));
+            String page = receiveResponse();
+            if (page == null || !page.startsWith("DATA")) {
+                System.out.println(page);
+                return names;
+            }
+            cursor = null;
+            for (String line : page.lines().skip(1).toList()) {
+                if (line.startsWith("next=")) {
+                    cursor = line.substring("next=".length()).trim();
+                } else if (!line.isBlank() && !line.startsWith("(")) {
+                    names.add(line);
+                }
+            }
+        } while (cursor != null);
+        return names;
+    }
+
+    // /search <fjala> [limit=] [cursor=] [fields=]: vetem fjala kyçe futet ne thonjeza
+    protected String searchCommand(String argument) {
+        Matcher matcher = PAGE_OPTIONS.matcher(argument.trim());
+        String keyword = argument.trim();
+        String options = "";
+        if (matcher.find()) {
+            keyword = argument.trim().substring(0, matcher.start());
+            options = matcher.group();
+        }
+        return CMD_SEARCH + " " + quoteIfNeeded(keyword) + options;
+    }
+
+    // ================== CACHE PER /read ==================
+    // /read me if-version: serveri kthen NOT_MODIFIED (pa permbajtje) kur versioni ne cache eshte aktual
+    protected String readWithCache(String file) {
+        String key = file.replace("\"", "").trim();
+        CachedRead cached;
+        synchronized (readCache) {
+            cached = readCache.get(key);
+        }
+        String command = CMD_READ + " " + quoteIfNeeded(file) + " if-version=" + (cached != null ? cached.version() : "*");
+        String response = requestForFile(command, file);
+
+        int newline = response.indexOf('\n');
+        String head = newline < 0 ? response : response.substring(0, newline);
+        int marker = head.indexOf(" version=");
+        if (marker < 0) {
+            return response; // ERR ose server pa perkrahje per versione
+        }
+        int versionEnd = head.indexOf(' ', marker + 1);
+        String version = head.substring(marker + " version=".length(), versionEnd < 0 ? head.length() : versionEnd).trim();
+        if (head.startsWith("NOT_MODIFIED")) {
+            if (cached != null && cached.version().equals(version)) {
+                return cached.body();
+            }
+            synchronized (readCache) {
+                readCache.remove(key);
+            }
+            return readWithCache(file);
+        }
+        String body = head.substring(0, marker) + (versionEnd < 0 ? "" : head.substring(versionEnd))
+                + (newline < 0 ? "" : response.substring(newline));
+        remember(key, new CachedRead(version, body));
+        return body;
+    }
+
+    private void remember(String key, CachedRead entry) {
+        synchronized (readCache) {
+            CachedRead previous = readCache.put(key, entry);
+            if (previous != null) {
+                readCacheBytes -= previous.body().length();
+            }
+            readCacheBytes += entry.body().length();
+            Iterator<CachedRead> it = readCache.values().iterator();
+            while ((readCache.size() > READ_CACHE_MAX_ENTRIES || readCacheBytes > READ_CACHE_MAX_CHARS) && it.hasNext()) {
+                readCacheBytes -= it.next().body().length();
+                it.remove();
+            }
+        }
+    }
+
+    private record CachedRead(String version, String body) {
+    }
+
+    private boolean isPrimary(InetSocketAddress node) {
+        return node.getPort() == serverPort && serverAddress.equals(node.getAddress());
+    }
+
+    private void sendTo(String message, InetSocketAddress target) {
+        try {
+            sendRequest(message, target);
+        } catch (IOException e) {
+            System.out.println("Error sending packet: " + e.getMessage());
+        }
+    }
+
+    // ================== RITRANSMETIMI ==================
+    // çdo kerkese merr nje id te re; serveri e kthen ne krye te pergjigjes (shih RequestEnvelope)
+    private void sendRequest(String message, SocketAddress target) throws IOException {
+        String id = Long.toString(++requestCounter, 36);
+        byte[] data = RequestEnvelope.wrap(id, message).getBytes(StandardCharsets.UTF_8);
+        DatagramPacket packet = new DatagramPacket(data, data.length, target);
+        socket.send(packet);
+        pending = new PendingRequest(id, packet, System.nanoTime());
+        if (probeNext) {
+            // prova e madhesise: pas nje ritransmetimi pa pergjigje quhet e humbur, pa pritur afatin e plote
+            pending.deadlineNanos = pending.sentNanos + 2 * retransmitTimer.rtoMs() * 1_000_000L;
+            probeNext = false;
+        }
+    }
+
+    // kerkesa e fundit: ritransmetohet me te njejtat bajte derisa te vije datagrami i pare i pergjigjes
+    private static final class PendingRequest {
+        private final String id;
+        private final DatagramPacket packet;
+        private long deadlineNanos;
+        private long sentNanos;
+        private boolean retransmitted;
+        private boolean answered;
+
+        private PendingRequest(String id, DatagramPacket packet, long sentNanos) {
+            this.id = id;
+            this.packet = packet;
+            this.sentNanos = sentNanos;
+            this.deadlineNanos = sentNanos + SOCKET_TIMEOUT_MS * 1_000_000L;
+        }
+    }
+
+    // datagrami i radhes per kerkesen aktuale; pergjigjet me id te vjeter (kopje te vonuara) hidhen
+    private String receiveReply() throws IOException {
+        PendingRequest request = pending;
+        long followUpDeadline = System.nanoTime() + SOCKET_TIMEOUT_MS * 1_000_000L;
+        while (true) {
+            long now = System.nanoTime();
+            long waitMs;
+            if (request == null) {
+                waitMs = (followUpDeadline - now) / 1_000_000L;
+            } else if (request.answered) {
+                // pjeset e tjera te nje pergjigjeje me shume datagrame nuk kerkohen perseri
+                waitMs = Math.min((followUpDeadline - now) / 1_000_000L, retransmitTimer.followUpMs());
+            } else {
+                long untilRto = retransmitTimer.rtoMs() - (now - request.sentNanos) / 1_000_000L;
+                waitMs = Math.min((request.deadlineNanos - now) / 1_000_000L, Math.max(1, untilRto));
+            }
+            if (waitMs <= 0) {
+                throw new SocketTimeoutException();
+            }
+            String datagram;
+            try {
+                datagram = receiveDatagram((int) waitMs);
+            } catch (SocketTimeoutException e) {
+                if (request == null || request.answered || System.nanoTime() >= request.deadlineNanos) {
+                    throw e;
+                }
+                retransmitTimer.onTimeout();
+                socket.send(request.packet);
+                request.sentNanos = System.nanoTime();
+                request.retransmitted = true;
+                continue;
+            }
+            RequestEnvelope.Parsed reply = RequestEnvelope.parse(datagram);
+            if (!reply.hasId()) {
+                return datagram; // EVENT ose server pa zarf
+            }
+            if (request == null || !reply.id().equals(request.id)) {
+                continue;
+            }
+            if (!request.answered) {
+                request.answered = true;
+                if (!request.retransmitted) {
+                    retransmitTimer.onSample(System.nanoTime() - request.sentNanos);
+                }
+            }
+            return reply.body();
+        }
+    }
+
     protected void sendPacket(String op, String payload) throws IOException {
         // Nderto mesazhin qe do te dergohet te serveri
         String message;
@@ -116,18 +486,65 @@ public abstract class BaseClient implements Closeable {
     // merr pergjigjen nga serveri
     protected String receiveResponse() {
         try {
-            byte[] buffer = new byte[8192];
-            DatagramPacket resp = new DatagramPacket(buffer, buffer.length);
-
-            socket.receive(resp);
-            return new String(resp.getData(), 0, resp.getLength(), StandardCharsets.UTF_8);
-
+            while (true) {
+                String response = receiveReply();
+                // ngjarjet e vonuara nga /watch dhe pjeset FEC te vonuara nuk jane pergjigje e komandes
+                if (!response.startsWith("EVENT\n") && (acceptFec || !response.startsWith(FecCodec.DATA_FEC + " "))) {
+                    return response;
+                }
+            }
         } catch (SocketTimeoutException e) {
             return "ERR Server nuk u përgjigj në kohë (timeout).";
         }catch (Exception e){
             return "ERR gjatë marrjes së përgjigjes: " + e.getMessage();
         }
     }
+    private String receiveDatagram(int timeoutMs) throws IOException {
+        socket.setSoTimeout(timeoutMs);
+        byte[] buffer = new byte[DATAGRAM_MAX];
+        DatagramPacket resp = new DatagramPacket(buffer, buffer.length);
+        socket.receive(resp);
+        return new String(resp.getData(), 0, resp.getLength(), StandardCharsets.UTF_8);
+    }
+
+    // /watch [sekonda]: printon ngjarjet e server_files; /watch ridergohet qe sesioni te mos skadoje
+    protected void watchChanges(String input) {
+        int seconds = DEFAULT_WATCH_SECONDS;
+        String arg = input.substring(CMD_WATCH.length()).trim();
+        if (!arg.isEmpty()) {
+            try {
+                seconds = Integer.parseInt(arg);
+            } catch (NumberFormatException e) {
+                System.out.println("Përdorimi: " + CMD_WATCH + " [sekonda]");
+                return;
+            }
+        }
+        sendMessage(CMD_WATCH);
+        System.out.println(receiveResponse());
+        long end = System.currentTimeMillis() + seconds * 1000L;
+        long nextRenew = System.currentTimeMillis() + CLIENT_TIMEOUT_MS / 2;
+        try {
+            while (System.currentTimeMillis() < end) {
+                if (System.currentTimeMillis() >= nextRenew) {
+                    sendMessage(CMD_WATCH);
+                    nextRenew = System.currentTimeMillis() + CLIENT_TIMEOUT_MS / 2;
+                }
+                try {
+                    String message = receiveDatagram((int) Math.max(1, Math.min(end, nextRenew) - System.currentTimeMillis()));
+                    if (message.startsWith("EVENT\n")) {
+                        message.lines().skip(1).forEach(line -> System.out.println("  * " + line));
+                    }
+                } catch (SocketTimeoutException ignored) {
+                    // vazhdo pritjen deri ne perfundim
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("ERR gjatë pritjes së ngjarjeve: " + e.getMessage());
+        }
+        sendMessage(CMD_UNWATCH);
+        System.out.println(receiveResponse());
+    }
+
     @Override
     public void close() throws IOException {
         socket.close();
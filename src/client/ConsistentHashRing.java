@@ -0,0 +1,53 @@
+package client;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hash i qendrueshem: çdo nyje ka disa pika virtuale ne unaze; emri i file-it shkon te pika e pare pas hash-it te tij.
+ * Shtimi i nje nyjeje zhvendos vetem pjesen e file-ve qe i takojne asaj.
+ */
+public class ConsistentHashRing {
+
+    private static final int VIRTUAL_NODES = 64;
+
+    private final TreeMap<Long, InetSocketAddress> ring = new TreeMap<>();
+
+    public ConsistentHashRing(List<InetSocketAddress> nodes) {
+        for (InetSocketAddress node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(node.getHostString() + ":" + node.getPort() + "#" + i), node);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    public InetSocketAddress nodeFor(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, InetSocketAddress> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xFF);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package client;
+
+import static server.ServerConfig.*;
+
+/**
+ * Madhesia e datagrameve drejt serverit, e gjetur me prova (si DPLPMTUD, RFC 8899, me humbjet ne vend te ICMP).
+ * Fillon nga DATAGRAM_MIN, qe kalon pa fragmentim ne çdo rruge. Pas PROBE_INTERVAL pergjigjeve pa humbje,
+ * nje kerkese provon nivelin e radhes; niveli konfirmohet kur prova vjen pa ritransmetim dhe bllokohet per
+ * PROBE_RETRY_MS pas PROBE_MAX_FAILURES provash te deshtuara. Kur kerkesat e madhesise aktuale humbin
+ * BLACK_HOLE_LOSSES here rresht (rruga ndryshoi), kthehet nje nivel poshte.
+ * Nje instance ndahet mes workerave te shkarkimit si RetransmitTimer.
+ */
+public class PathMtu {
+
+    // 1472 = Ethernet 1500 pa kokat IPv4 + UDP; 8192 = buffer-i i marrjes se klientit
+    private static final int[] LEVELS = {DATAGRAM_MIN, 1_472, 4_096, DATAGRAM_MAX};
+    private static final int PROBE_INTERVAL = 16;
+    private static final int PROBE_MAX_FAILURES = 2;
+    private static final long PROBE_RETRY_MS = 60_000L;
+    private static final int BLACK_HOLE_LOSSES = 3;
+
+    private int level;
+    private int cleanReplies;
+    private int consecutiveLosses;
+    private int failedProbes;
+    private long probeBlockedUntil;
+    private long probes;
+    private long fallbacks;
+
+    // madhesia e konfirmuar; kjo i njoftohet serverit me /mtu
+    public synchronized int size() {
+        return LEVELS[level];
+    }
+
+    // madhesia per kerkesen e radhes: here pas here niveli i radhes si prove
+    public synchronized int nextSize() {
+        if (level + 1 < LEVELS.length && cleanReplies >= PROBE_INTERVAL
+                && System.currentTimeMillis() >= probeBlockedUntil) {
+            cleanReplies = 0;
+            probes++;
+            return LEVELS[level + 1];
+        }
+        return LEVELS[level];
+    }
+
+    // lost: pergjigjja erdhi vetem pas ritransmetimit, ose nuk erdhi fare
+    public synchronized void onReply(int size, boolean lost) {
+        int current = LEVELS[level];
+        if (size > current) {
+            if (!lost) {
+                while (level + 1 < LEVELS.length && LEVELS[level + 1] <= size) {
+                    level++;
+                }
+                failedProbes = 0;
+                consecutiveLosses = 0;
+            } else if (++failedProbes >= PROBE_MAX_FAILURES) {
+                failedProbes = 0;
+                probeBlockedUntil = System.currentTimeMillis() + PROBE_RETRY_MS;
+            }
+            return;
+        }
+        if (size < current) {
+            return; // kerkese e nisur para ndryshimit te nivelit
+        }
+        if (!lost) {
+            cleanReplies++;
+            consecutiveLosses = 0;
+        } else if (++consecutiveLosses >= BLACK_HOLE_LOSSES && level > 0) {
+            level--;
+            consecutiveLosses = 0;
+            cleanReplies = 0;
+            fallbacks++;
+        }
+    }
+
+    public synchronized String describe() {
+        return "Datagramet: " + LEVELS[level] + " bajte" + (level + 1 < LEVELS.length ? " (tjetra " + LEVELS[level + 1] + ")" : "")
+                + ", prova " + probes + ", kthime poshte " + fallbacks
+                + (System.currentTimeMillis() < probeBlockedUntil ? ", provat te ndaluara perkohesisht" : "");
+    }
+}
@@ -17,8 +17,9 @@ public class ReadOnlyClient extends BaseClient {
             System.out.println("=== READ ONLY CLIENT (ID = " + clientId + ") ===");
             sendHello(String.valueOf(Permission.READ_ONLY));
             System.out.println(receiveResponse());
+            announceDatagramSize();
             System.out.println("Komandat e lejuara: " + CMD_LIST + ", " +
-                    CMD_READ + " <file>, " + CMD_SEARCH + " <keyword>");
+                    CMD_READ + " <file>, " + CMD_SEARCH + " <keyword>, " + CMD_DU + " [dir], " + CMD_WATCH + " [sekonda]");
             System.out.println(CMD_EXIT + " ose exit/quit për ta mbyllur");
             System.out.println("------------------------------------------------------------");
 
@@ -35,17 +36,20 @@ public class ReadOnlyClient extends BaseClient {
                 System.out.println("Po e mbyll klientin read-only...");
                 break;
             }
-            if (input.equals(CMD_LIST)) {
-                sendMessage(CMD_LIST);
+            if (input.equals(CMD_LIST) || input.startsWith(CMD_LIST + " ")) {
+                sendMessage(input);
                 System.out.println(receiveResponse());
             } else if (input.startsWith(CMD_READ + " ")) {
                 String file = input.substring(CMD_READ.length() + 1).trim();
-                sendMessage(CMD_READ + " " + quoteIfNeeded(file));
-                System.out.println(receiveResponse());
+                System.out.println(readWithCache(file));
             } else if (input.startsWith(CMD_SEARCH + " ")) {
-                String key = input.substring(CMD_SEARCH.length() + 1).trim();
-                sendMessage(CMD_SEARCH + " " + quoteIfNeeded(key));
+                sendMessage(searchCommand(input.substring(CMD_SEARCH.length() + 1)));
+                System.out.println(receiveResponse());
+            } else if (input.equals(CMD_DU) || input.startsWith(CMD_DU + " ")) {
+                sendMessage(input);
                 System.out.println(receiveResponse());
+            } else if (input.equals(CMD_WATCH) || input.startsWith(CMD_WATCH + " ")) {
+                watchChanges(input);
             } else {
                 System.out.println("Nuk ke autorizim për këtë komandë.");
             }
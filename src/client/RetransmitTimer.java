@@ -0,0 +1,52 @@
+package client;
+
+import static server.ServerConfig.*;
+
+/**
+ * Vleresuesi i RTT per ritransmetimet e klientit (si RFC 6298): srtt dhe rttvar nga pergjigjet,
+ * RTO = srtt + 4 * rttvar brenda kufijve, i dyfishuar pas çdo timeout-i deri ne mostren e radhes.
+ * Kerkesat e ritransmetuara nuk japin mostra (rregulli i Karn-it), sepse nuk dihet cilen kopje po konfirmon pergjigjja.
+ * Nje instance ndahet mes komandave dhe workerave te shkarkimit qe flasin me te njejtin server.
+ */
+public class RetransmitTimer {
+
+    private double srttMs = -1;
+    private double rttvarMs;
+    private long rtoMs = RTO_INITIAL_MS;
+    private long samples;
+    private long retransmissions;
+
+    public synchronized long rtoMs() {
+        return rtoMs;
+    }
+
+    // ================== MOSTRAT ==================
+    public synchronized void onSample(long rttNanos) {
+        double sampleMs = rttNanos / 1_000_000.0;
+        if (srttMs < 0) {
+            srttMs = sampleMs;
+            rttvarMs = sampleMs / 2;
+        } else {
+            rttvarMs = rttvarMs * 3 / 4 + Math.abs(srttMs - sampleMs) / 4;
+            srttMs = srttMs * 7 / 8 + sampleMs / 8;
+        }
+        rtoMs = Math.max(RTO_MIN_MS, Math.min(RTO_MAX_MS, Math.round(srttMs + 4 * rttvarMs)));
+        samples++;
+    }
+
+    // pergjigjja nuk erdhi brenda RTO: backoff eksponencial
+    public synchronized void onTimeout() {
+        rtoMs = Math.min(RTO_MAX_MS, rtoMs * 2);
+        retransmissions++;
+    }
+
+    // pritja per datagramet e tjera te nje pergjigjeje qe ka filluar te vije (batch, grup FEC)
+    public synchronized long followUpMs() {
+        return Math.max(RTO_FOLLOW_UP_MIN_MS, Math.min(RTO_MAX_MS, rtoMs * 2));
+    }
+
+    public synchronized String describe() {
+        return String.format("RTT klienti: srtt=%s ms, rttvar=%.1f ms, rto=%d ms, mostra %d, ritransmetime %d",
+                srttMs < 0 ? "-" : String.format("%.1f", srttMs), rttvarMs, rtoMs, samples, retransmissions);
+    }
+}
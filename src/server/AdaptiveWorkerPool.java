@@ -0,0 +1,150 @@
+package server;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool i workerave qe e rregullon vete madhesine: mat kohen qe paketat presin ne rradhe
+ * dhe kohen e perpunimit, dhe e rrit/zvogelon numrin e thread-ave brenda kufijve te konfiguruar.
+ */
+public class AdaptiveWorkerPool {
+
+    private static final int MAX_DECISIONS = 5;
+
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final ThreadPoolExecutor executor;
+
+    // matjet per intervalin aktual
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong serviceNanos = new AtomicLong();
+
+    private final Deque<String> decisions = new ArrayDeque<>();
+    private volatile double lastAvgWaitMs;
+    private volatile double lastAvgServiceMs;
+    private volatile boolean running = true;
+
+    public AdaptiveWorkerPool(int initialWorkers, int minWorkers, int maxWorkers) {
+        this.minWorkers = Math.max(1, minWorkers);
+        this.maxWorkers = Math.max(this.minWorkers, maxWorkers);
+        int initial = Math.max(this.minWorkers, Math.min(this.maxWorkers, initialWorkers));
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(initial, initial, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "udp-worker-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        Thread controller = new Thread(this::controlLoop, "worker-pool-controller");
+        controller.setDaemon(true);
+        controller.start();
+    }
+
+    public void execute(Runnable task) {
+        long enqueued = System.nanoTime();
+        executor.execute(() -> {
+            long started = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                waitNanos.addAndGet(started - enqueued);
+                serviceNanos.addAndGet(System.nanoTime() - started);
+                tasks.incrementAndGet();
+            }
+        });
+    }
+
+    public void shutdown() {
+        running = false;
+        executor.shutdown();
+    }
+
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    // ================== KONTROLLUESI ==================
+    private void controlLoop() {
+        while (running) {
+            try {
+                Thread.sleep(ServerConfig.POOL_CONTROL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            adjust();
+        }
+    }
+
+    private void adjust() {
+        long count = tasks.getAndSet(0);
+        long wait = waitNanos.getAndSet(0);
+        long service = serviceNanos.getAndSet(0);
+        int size = executor.getCorePoolSize();
+
+        if (count == 0) {
+            lastAvgWaitMs = 0;
+            lastAvgServiceMs = 0;
+            if (size > minWorkers && executor.getQueue().isEmpty()) {
+                resize(size - 1, "idle");
+            }
+            return;
+        }
+
+        double avgWaitMs = wait / (double) count / 1_000_000.0;
+        double avgServiceMs = service / (double) count / 1_000_000.0;
+        double utilization = service / (ServerConfig.POOL_CONTROL_INTERVAL_MS * 1_000_000.0 * size);
+        lastAvgWaitMs = avgWaitMs;
+        lastAvgServiceMs = avgServiceMs;
+
+        if (avgWaitMs > ServerConfig.POOL_WAIT_HIGH_MS && size < maxWorkers) {
+            resize(Math.min(maxWorkers, size + Math.max(1, size / 2)),
+                    String.format("queue wait %.2f ms > %d ms", avgWaitMs, ServerConfig.POOL_WAIT_HIGH_MS));
+        } else if (avgWaitMs < ServerConfig.POOL_WAIT_LOW_MS && utilization < 0.5 && size > minWorkers) {
+            resize(size - 1, String.format("queue wait %.2f ms, utilization %.0f%%", avgWaitMs, utilization * 100));
+        }
+    }
+
+    private void resize(int newSize, String reason) {
+        int oldSize = executor.getCorePoolSize();
+        if (newSize == oldSize) {
+            return;
+        }
+        // rendi ka rendesi: core <= max ne çdo moment
+        if (newSize > oldSize) {
+            executor.setMaximumPoolSize(newSize);
+            executor.setCorePoolSize(newSize);
+        } else {
+            executor.setCorePoolSize(newSize);
+            executor.setMaximumPoolSize(newSize);
+        }
+        synchronized (decisions) {
+            decisions.addFirst(Instant.now() + " " + oldSize + " -> " + newSize + " (" + reason + ")");
+            while (decisions.size() > MAX_DECISIONS) {
+                decisions.removeLast();
+            }
+        }
+    }
+
+    public String buildStats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Worker pool: ").append(executor.getCorePoolSize())
+                .append(" threads (min ").append(minWorkers).append(", max ").append(maxWorkers).append(")\n");
+        sb.append(String.format("  Queue: %d waiting, avg wait %.2f ms, avg service %.2f ms%n",
+                executor.getQueue().size(), lastAvgWaitMs, lastAvgServiceMs));
+        synchronized (decisions) {
+            for (String decision : decisions) {
+                sb.append("  Resize: ").append(decision).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formati i kerkesave BATCH (shume komanda ne nje datagram) dhe i pergjigjeve te ndara ne pjese.
+ * Kerkesa:   BATCH\n<komanda 1>\n<komanda 2>\n...
+ * Pergjigjja: BATCH_RESULT <pjesa>/<pjeset>\n#<indeksi> <gjatesia ne karaktere>\n<rezultati>\n...
+ */
+public final class BatchProtocol {
+
+    public static final String BATCH = "BATCH";
+    public static final String BATCH_RESULT = "BATCH_RESULT";
+
+    private BatchProtocol() {
+    }
+
+    public record Frame(int index, String result) {
+    }
+
+    public record Part(int part, int parts, List<Frame> frames) {
+    }
+
+    // i ndan komandat ne kerkesa qe secila te hyje ne maxBytes
+    public static List<String> encodeRequests(List<String> commands, int maxBytes) {
+        List<String> requests = new ArrayList<>();
+        StringBuilder current = new StringBuilder(BATCH);
+        int count = 0;
+        for (String command : commands) {
+            String line = "\n" + command.replace('\n', ' ');
+            int size = current.toString().getBytes(StandardCharsets.UTF_8).length + line.getBytes(StandardCharsets.UTF_8).length;
+            if (count > 0 && (size > maxBytes || count >= ServerConfig.BATCH_MAX_COMMANDS)) {
+                requests.add(current.toString());
+                current = new StringBuilder(BATCH);
+                count = 0;
+            }
+            current.append(line);
+            count++;
+        }
+        if (count > 0) {
+            requests.add(current.toString());
+        }
+        return requests;
+    }
+
+    public static List<String> parseRequest(String message) {
+        List<String> commands = new ArrayList<>();
+        String[] lines = message.replace("\r", "").split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            if (!lines[i].isBlank()) {
+                commands.add(lines[i].trim());
+            }
+        }
+        return commands;
+    }
+
+    // rezultatet ndahen ne disa datagrame; nje rezultat nuk ndahet kurre mes dy pjeseve
+    public static List<String> encodeResults(List<String> results, int maxBytes) {
+        List<StringBuilder> bodies = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentBytes = 0;
+        for (int i = 0; i < results.size(); i++) {
+            String result = results.get(i);
+            String frame = "#" + i + " " + result.length() + "\n" + result + "\n";
+            int frameBytes = frame.getBytes(StandardCharsets.UTF_8).length;
+            if (currentBytes > 0 && currentBytes + frameBytes > maxBytes) {
+                bodies.add(current);
+                current = new StringBuilder();
+                currentBytes = 0;
+            }
+            current.append(frame);
+            currentBytes += frameBytes;
+        }
+        bodies.add(current);
+
+        List<String> datagrams = new ArrayList<>();
+        for (int i = 0; i < bodies.size(); i++) {
+            datagrams.add(BATCH_RESULT + " " + (i + 1) + "/" + bodies.size() + "\n" + bodies.get(i));
+        }
+        return datagrams;
+    }
+
+    public static Part parseResultPart(String datagram) {
+        if (datagram == null || !datagram.startsWith(BATCH_RESULT + " ")) {
+            return null;
+        }
+        int newline = datagram.indexOf('\n');
+        String[] counter = datagram.substring(BATCH_RESULT.length() + 1, newline < 0 ? datagram.length() : newline)
+                .trim().split("/");
+        if (counter.length != 2) {
+            return null;
+        }
+        List<Frame> frames = new ArrayList<>();
+        int cursor = newline < 0 ? datagram.length() : newline + 1;
+        while (cursor < datagram.length() && datagram.charAt(cursor) == '#') {
+            int headerEnd = datagram.indexOf('\n', cursor);
+            if (headerEnd < 0) {
+                return null;
+            }
+            String[] header = datagram.substring(cursor + 1, headerEnd).split(" ");
+            int index = Integer.parseInt(header[0]);
+            int length = Integer.parseInt(header[1]);
+            int start = headerEnd + 1;
+            if (start + length > datagram.length()) {
+                return null;
+            }
+            frames.add(new Frame(index, datagram.substring(start, start + length)));
+            cursor = start + length + 1;
+        }
+        return new Part(Integer.parseInt(counter[0]), Integer.parseInt(counter[1]), frames);
+    }
+}
@@ -0,0 +1,239 @@
+package server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ruajtje e adresuar sipas permbajtjes: çdo permbajtje ruhet nje here si blob me emer SHA-256,
+ * ndersa server_files / uploads / downloads e referencojne me hard link (ose kopje kur FS nuk i perkrah).
+ * Numri i referencave mbahet ne index; blob-i fshihet kur nuk e referencon me asnje file.
+ *
+ * Te gjitha emrat e nje blob-i ndajne te njejtin inode, ndaj asnje file i lidhur nuk shkruhet ne vend:
+ * çdo shkrim kalon nga put() (copy-on-write: blob i ri + rename atomik) dhe blob-et behen read-only.
+ * Lexuesit qe duan madhesine dhe permbajtjen e te njejtit version mbajne read(target, ...).
+ */
+public class BlobStore {
+
+    private static final String INDEX_FILE = "index.txt";
+    private static final int LOCK_STRIPES = 64;
+    private static final Set<PosixFilePermission> READ_ONLY = PosixFilePermissions.fromString("r--r--r--");
+
+    private final Path blobDir;
+    private final Path indexFile;
+    private final Map<Path, String> refs = new HashMap<>();          // file -> hash
+    private final Map<String, Integer> refCounts = new HashMap<>();  // hash -> numri i referencave
+    // link() zevendeson target-in nen write lock; lexuesit e te njejtit target presin (lock-e te ndara sipas path-it)
+    private final ReadWriteLock[] targetLocks = new ReadWriteLock[LOCK_STRIPES];
+
+    public BlobStore(String path) throws IOException {
+        this.blobDir = Paths.get(path).toAbsolutePath().normalize();
+        Files.createDirectories(blobDir);
+        this.indexFile = blobDir.resolve(INDEX_FILE);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            targetLocks[i] = new ReentrantReadWriteLock();
+        }
+        loadIndex();
+    }
+
+    // Ruan permbajtjen (nese s'ekziston) dhe e lidh te target; kthen hash-in
+    public synchronized String put(Path target, byte[] data) throws IOException {
+        String hash = sha256(data);
+        Path blob = blobPath(hash);
+        // blob-i i ndryshuar ne vend (madhesi tjeter) nuk riperdoret: shkruhet nje inode i ri
+        if (!Files.exists(blob) || Files.size(blob) != data.length) {
+            // permbajtja behet e qendrueshme (fsync) para se blob-i te marre emrin perfundimtar
+            Path temp = Files.createTempFile(blobDir, hash, ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            seal(temp);
+            Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        link(target, hash);
+        return hash;
+    }
+
+    public interface FileRead<T> {
+        T read() throws IOException;
+    }
+
+    // lexim qe nuk nderthuret me zevendesimin e target-it nga link(); brenda s'duhet thirrur BlobStore
+    public <T> T read(Path target, FileRead<T> read) throws IOException {
+        Lock lock = lockFor(target.toAbsolutePath().normalize()).readLock();
+        lock.lock();
+        try {
+            return read.read();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Lidh target me blob ekzistues; kthen false nese blob-i mungon
+    public synchronized boolean linkExisting(Path target, String hash) throws IOException {
+        if (!Files.exists(blobPath(hash))) {
+            return false;
+        }
+        link(target, hash);
+        return true;
+    }
+
+    public synchronized String hashOf(Path target) {
+        return refs.get(target.toAbsolutePath().normalize());
+    }
+
+    // Fshin file-in dhe liron referencen e tij
+    public synchronized void delete(Path target) throws IOException {
+        Path key = target.toAbsolutePath().normalize();
+        Files.deleteIfExists(key);
+        if (release(key)) {
+            saveIndex();
+        }
+    }
+
+    public synchronized int refCount(String hash) {
+        return refCounts.getOrDefault(hash, 0);
+    }
+
+    public static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ============================
+    //   HELPER METHODS
+    // ============================
+
+    private void link(Path target, String hash) throws IOException {
+        Path key = target.toAbsolutePath().normalize();
+        if (hash.equals(refs.get(key)) && Files.exists(key)) {
+            return; // e njejta permbajtje, asnje shkrim
+        }
+        // asnjehere mos shkruaj mbi nje hard link ekzistues: do ta korruptonte blob-in.
+        // Lidhja krijohet me emer te perkohshem dhe zevendeson target-in me rename atomik,
+        // keshtu lexuesit shohin ose versionin e vjeter ose te riun, kurre nje file te prere
+        Files.createDirectories(key.getParent());
+        refCounts.merge(hash, 1, Integer::sum);
+        Path blob = blobPath(hash);
+        Path temp = blobDir.resolve("link-" + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createLink(temp, blob);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(blob, temp, StandardCopyOption.REPLACE_EXISTING);
+            seal(temp);
+        }
+        Lock lock = lockFor(key).writeLock();
+        lock.lock();
+        try {
+            Files.move(temp, key, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, key, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            lock.unlock();
+            Files.deleteIfExists(temp); // rename mbi te njejtin inode nuk e heq burimin
+        }
+        release(key);
+        refs.put(key, hash);
+        saveIndex();
+    }
+
+    private boolean release(Path key) throws IOException {
+        String hash = refs.remove(key);
+        if (hash == null) {
+            return false;
+        }
+        int remaining = refCounts.merge(hash, -1, Integer::sum);
+        if (remaining <= 0) {
+            refCounts.remove(hash);
+            Files.deleteIfExists(blobPath(hash));
+        }
+        return true;
+    }
+
+    private ReadWriteLock lockFor(Path key) {
+        return targetLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    // inode-i i perbashket behet read-only qe nje shkrim ne vend te deshtoje ne vend qe te ndryshoje te gjitha kopjet
+    private static void seal(Path file) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (view != null) {
+            view.setPermissions(READ_ONLY);
+        }
+    }
+
+    private Path blobPath(String hash) {
+        return blobDir.resolve(hash);
+    }
+
+    private void loadIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            String hash = line.substring(0, space);
+            Path file = Paths.get(line.substring(space + 1));
+            // referencat e file-ve te fshira jashte serverit injorohen
+            if (Files.exists(file) && Files.exists(blobPath(hash))) {
+                seal(blobPath(hash));
+                refs.put(file, hash);
+                refCounts.merge(hash, 1, Integer::sum);
+            }
+        }
+        // pastro blob-et qe nuk i referencon me askush
+        try (var stream = Files.list(blobDir)) {
+            for (Path blob : stream.toList()) {
+                String name = blob.getFileName().toString();
+                if (!name.startsWith(INDEX_FILE) && !refCounts.containsKey(name)) {
+                    Files.deleteIfExists(blob);
+                }
+            }
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        Path temp = blobDir.resolve(INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Path, String> entry : refs.entrySet()) {
+                writer.write(entry.getValue() + " " + entry.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
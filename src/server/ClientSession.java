@@ -29,6 +29,11 @@ public class ClientSession {
     private final AtomicLong bytesReceived;  // bytes që ka dërgu klienti
     private final AtomicLong bytesSent;      // bytes që i ka kthyer serveri
 
+    private final ReplayCache replayCache = new ReplayCache(); // pergjigjet sipas id-se, per ritransmetimet
+    private volatile int datagramLimit = ServerConfig.DATAGRAM_MAX; // e negociuar me /mtu
+    private final AtomicLong allocatedBytes = new AtomicLong(); // alokimet e kerkesave (RequestProfiler)
+    private final AtomicLong cpuNanos = new AtomicLong();
+
     // ======================
     //  KONSTRUKTORI
     // ======================
@@ -44,6 +49,20 @@ public class ClientSession {
         this.bytesSent = new AtomicLong(0);
     }
 
+    // rikthim nga snapshot-i pas restartit te serverit
+    ClientSession(SocketAddress address, String clientId, Permission permission, boolean authenticated,
+                  long lastActive, long messages, long bytesReceived, long bytesSent) {
+        this.address = address;
+        this.clientId = clientId;
+        this.permission = permission;
+        this.authenticated = authenticated;
+        this.lastActive = lastActive;
+
+        this.messagesCount = new AtomicLong(messages);
+        this.bytesReceived = new AtomicLong(bytesReceived);
+        this.bytesSent = new AtomicLong(bytesSent);
+    }
+
     // ======================
     //  GETTERS
     // ======================
@@ -78,6 +97,22 @@ public class ClientSession {
         return bytesSent.get();
     }
 
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos.get();
+    }
+
+    public ReplayCache getReplayCache() {
+        return replayCache;
+    }
+
+    public int getDatagramLimit() {
+        return datagramLimit;
+    }
+
     // ======================
     //  SETTERS
     // ======================
@@ -89,6 +124,10 @@ public class ClientSession {
         this.permission = permission;
     }
 
+    public void setDatagramLimit(int datagramLimit) {
+        this.datagramLimit = datagramLimit;
+    }
+
     public void markAuthenticated() {
         this.authenticated = true;
     }
@@ -112,6 +151,11 @@ public class ClientSession {
         bytesSent.addAndGet(bytes);
     }
 
+    public void addResourceUsage(long allocated, long cpu) {
+        allocatedBytes.addAndGet(allocated);
+        cpuNanos.addAndGet(cpu);
+    }
+
     // ======================
     //  DEBUG / PRINTIM
     // ======================
@@ -0,0 +1,461 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Replikimi i ndryshimeve te server_files (/upload, /patch, /delete) te nyjet e tjera te klasterit.
+ * Mesazhi: REPL <seq> <komanda>; nyja tjeter e ekzekuton dhe kthen REPL_ACK <seq> <file> <rezultati>.
+ * Mesazhet pa ACK ridergohen disa here; per çdo file aplikohet vetem ndryshimi me seq me te madhe.
+ * File-t qe nuk hyjne ne buffer-in e marrjes (BUFFER_SIZE) dergohen ne pjese me offset, si /download:
+ * REPL <seq> /upload <file> offset=<n> total=<t> <base64>, me ACK per pjese
+ * (REPL_ACK <seq> <file> offset=<n> <rezultati>) dhe te shumten REPLICATION_WINDOW pjese pa ACK.
+ * Nyjet njihen nga adresa e burimit (udp.cluster.nodes); me udp.cluster.secret çdo mesazh mban edhe
+ * mac=<HMAC-SHA256> pas seq dhe mesazhet pa mac te sakte hidhen. Pa sekret, kushdo qe mund te dergoje
+ * nga adresa e nje nyjeje (p.sh. me adrese te falsifikuar) mund te ndryshoje file-t - vetem ne rrjete te besuara.
+ */
+public class ClusterReplicator {
+
+    public static final String REPL = "REPL";
+    public static final String REPL_ACK = "REPL_ACK";
+    private static final String MAC_PREFIX = "mac=";
+    private static final int MAC_BYTES = 16;                                       // HMAC-SHA256 e shkurtuar
+    private static final int MAC_FIELD_BYTES = MAC_PREFIX.length() + MAC_BYTES * 2 + 1;
+    private static final int APPLY_LOCKS = 64;
+
+    private final List<InetSocketAddress> peers;
+    private final BiConsumer<String, SocketAddress> sender;
+    private final SecretKeySpec secret;   // null: nyjet besohen vetem sipas adreses
+    // ndryshimet e te njejtit file aplikohen me radhe; file-t e tjera dhe ACK-et nuk presin
+    private final Object[] applyLocks = new Object[APPLY_LOCKS];
+    // rritet edhe pas restartit, qe nyjet te mos i injorojne ndryshimet e reja
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();       // peer + file -> ndryshimi i fundit pa ACK
+    private final Map<String, Long> lastApplied = new ConcurrentHashMap<>();      // origjina + file -> seq e fundit e aplikuar
+    private final Map<String, Assembly> assemblies = new ConcurrentHashMap<>();   // origjina + file -> pjeset e marra
+    private final AtomicLong chunkedMutations = new AtomicLong();
+    private final AtomicLong refusedMutations = new AtomicLong();
+    private final AtomicLong rejectedMessages = new AtomicLong();
+    private volatile boolean running;
+
+    public ClusterReplicator(List<InetSocketAddress> peers, BiConsumer<String, SocketAddress> sender, String secret) {
+        this.peers = List.copyOf(peers);
+        this.sender = sender;
+        this.secret = secret == null ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        for (int i = 0; i < APPLY_LOCKS; i++) {
+            applyLocks[i] = new Object();
+        }
+    }
+
+    public boolean isEnabled() {
+        return !peers.isEmpty();
+    }
+
+    public List<InetSocketAddress> getPeers() {
+        return peers;
+    }
+
+    public boolean isPeer(SocketAddress address) {
+        return address instanceof InetSocketAddress inet && peers.stream().anyMatch(peer ->
+                peer.getPort() == inet.getPort() && peer.getAddress().equals(inet.getAddress()));
+    }
+
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        Thread t = new Thread(this::retryLoop, "cluster-replicator");
+        t.setDaemon(true);
+        t.start();
+        System.out.println("Cluster mode: replicating to " + peers);
+        if (secret == null) {
+            System.out.println("Cluster peers are trusted by source address only; set " + ServerConfig.PROP_CLUSTER_SECRET
+                    + " on every node to authenticate replication messages.");
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    // ================== DERGIMI I NDRYSHIMEVE ==================
+    // thirret nga FileCommandHandler pas çdo ndryshimi te suksesshem
+    public void onMutation(String fileName, Path file, boolean deleted) {
+        if (!isEnabled()) {
+            return;
+        }
+        long seq = sequence.incrementAndGet();
+        Mutation mutation;
+        if (deleted) {
+            mutation = new Mutation(List.of(REPL + " " + seq + " " + ServerConfig.CMD_DELETE + " " + quote(fileName)), 0);
+        } else {
+            byte[] content;
+            try {
+                // replikohet permbajtja perfundimtare, jo delta, qe nyjet te mos divergjojne
+                content = Files.readAllBytes(file);
+            } catch (IOException e) {
+                System.err.println("Replication skipped for " + fileName + ": " + e.getMessage());
+                return;
+            }
+            mutation = uploadMessages(seq, fileName, content);
+            if (mutation == null) {
+                refusedMutations.incrementAndGet();
+                System.err.println("Replication refused for " + fileName + ": " + content.length
+                        + " bytes is over the limit of " + ServerConfig.REPLICATION_MAX_FILE_BYTES + "; replicas are now out of date");
+                return;
+            }
+            if (mutation.chunkSize() > 0) {
+                chunkedMutations.incrementAndGet();
+            }
+        }
+        for (InetSocketAddress peer : peers) {
+            // ndryshimi i ri per te njejtin file zevendeson ate qe ende po ridergohet
+            Pending p = new Pending(peer, seq, mutation);
+            pending.put(key(peer, fileName), p);
+            synchronized (p) {
+                sendWindow(p);
+            }
+        }
+    }
+
+    // mesazhet e nje ndryshimi; chunkSize == 0 kur i gjithe ndryshimi hyn ne nje datagram
+    private record Mutation(List<String> messages, int chunkSize) {
+    }
+
+    // nje mesazh kur hyn ne nje datagram, perndryshe pjese me offset; null kur file-i eshte shume i madh
+    private Mutation uploadMessages(long seq, String fileName, byte[] content) {
+        String whole = REPL + " " + seq + " " + ServerConfig.CMD_UPLOAD + " " + quote(fileName) + " "
+                + Base64.getEncoder().encodeToString(content);
+        if (whole.getBytes(StandardCharsets.UTF_8).length + macFieldBytes() <= ServerConfig.BUFFER_SIZE) {
+            return new Mutation(List.of(whole), 0);
+        }
+        if (content.length > ServerConfig.REPLICATION_MAX_FILE_BYTES) {
+            return null;
+        }
+        String prefix = REPL + " " + seq + " " + ServerConfig.CMD_UPLOAD + " " + quote(fileName) + " ";
+        // koka me e gjate e mundshme: offset me aq shifra sa total
+        int headerBytes = (prefix + "offset=" + content.length + " total=" + content.length + " ")
+                .getBytes(StandardCharsets.UTF_8).length + macFieldBytes();
+        int chunkSize = (ServerConfig.BUFFER_SIZE - headerBytes) / 4 * 3;
+        if (chunkSize < 3) {
+            return null; // emri vete nuk le vend per te dhena
+        }
+        List<String> messages = new ArrayList<>();
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, content.length - offset);
+            byte[] chunk = new byte[length];
+            System.arraycopy(content, offset, chunk, 0, length);
+            messages.add(prefix + "offset=" + offset + " total=" + content.length + " " + encoder.encodeToString(chunk));
+        }
+        return new Mutation(messages, chunkSize);
+    }
+
+    // dergon pjeset e radhes deri ne REPLICATION_WINDOW pa ACK (thirret me lock-un e p)
+    private void sendWindow(Pending p) {
+        while (p.nextUnsent < p.messages.size()
+                && p.nextUnsent - p.acked.cardinality() < ServerConfig.REPLICATION_WINDOW) {
+            send(p.messages.get(p.nextUnsent++), p.peer);
+        }
+    }
+
+    // ================== MARRJA NGA NYJET E TJERA ==================
+    // REPL <seq> <komanda> -> ekzekuto dhe kthe ACK; workerat punojne paralelisht,
+    // prandaj ndryshimet me seq me te vjeter per te njejtin file injorohen.
+    // Vetem ndryshimet e te njejtit file serializohen; ACK-u dergohet jashte çdo lock-u
+    public void handleReplication(String message, SocketAddress from, FileCommandHandler handler) {
+        message = verify(message);
+        if (message == null) {
+            return;
+        }
+        String[] parts = message.split(" ", 3);
+        if (parts.length < 3 || !(from instanceof InetSocketAddress peer)) {
+            return;
+        }
+        long seq;
+        try {
+            seq = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        String command = parts[2];
+        String fileName = fileToken(command);
+        String appliedKey = key(peer, fileName);
+        Chunk chunk = Chunk.parse(command, fileName);
+        String summary;
+        synchronized (applyLocks[Math.floorMod(appliedKey.hashCode(), APPLY_LOCKS)]) {
+            Long last = lastApplied.get(appliedKey);
+            if (last != null && seq <= last) {
+                summary = "OK Already applied";
+            } else if (chunk != null) {
+                summary = applyChunk(appliedKey, seq, fileName, chunk, handler);
+            } else {
+                summary = handler.handleReplicated(command).lines().findFirst().orElse("");
+                lastApplied.put(appliedKey, seq);
+                assemblies.remove(appliedKey);
+            }
+        }
+        String offset = chunk != null ? "offset=" + chunk.offset + " " : "";
+        send(REPL_ACK + " " + seq + " " + quote(fileName) + " " + offset + summary, from);
+    }
+
+    // mbledh pjeset e nje ndryshimi; kur mbushet, e aplikon si nje /upload te vetem (me lock-un e file-it)
+    private String applyChunk(String appliedKey, long seq, String fileName, Chunk chunk, FileCommandHandler handler) {
+        if (chunk.total > ServerConfig.REPLICATION_MAX_FILE_BYTES) {
+            return "ERR File too large to replicate";
+        }
+        Assembly assembly = assemblies.get(appliedKey);
+        if (assembly != null && seq < assembly.seq) {
+            return "OK Superseded";
+        }
+        if (assembly == null || seq > assembly.seq || assembly.content.length != chunk.total) {
+            assembly = new Assembly(seq, (int) chunk.total);
+            assemblies.put(appliedKey, assembly);
+        }
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(chunk.base64);
+        } catch (IllegalArgumentException e) {
+            return "ERR Invalid chunk payload";
+        }
+        if (chunk.offset < 0 || chunk.offset + data.length > assembly.content.length) {
+            return "ERR Chunk outside file";
+        }
+        if (assembly.received.add(chunk.offset)) {
+            System.arraycopy(data, 0, assembly.content, (int) chunk.offset, data.length);
+            assembly.receivedBytes += data.length;
+        }
+        if (assembly.receivedBytes < assembly.content.length) {
+            return "OK Chunk stored";
+        }
+        assemblies.remove(appliedKey);
+        lastApplied.put(appliedKey, seq);
+        return handler.handleReplicated(ServerConfig.CMD_UPLOAD + " " + quote(fileName) + " "
+                + Base64.getEncoder().encodeToString(assembly.content)).lines().findFirst().orElse("");
+    }
+
+    // REPL_ACK <seq> <file> <rezultati>
+    public void handleAck(String message, SocketAddress from) {
+        message = verify(message);
+        if (message == null) {
+            return;
+        }
+        String[] parts = message.split(" ", 3);
+        if (parts.length < 3 || !(from instanceof InetSocketAddress peer)) {
+            return;
+        }
+        try {
+            long seq = Long.parseLong(parts[1]);
+            String rest = parts[2];
+            String fileToken = fileToken("x " + rest);
+            String result = rest.substring(Math.min(rest.length(), fileToken.length() + (rest.startsWith("\"") ? 3 : 1)));
+            long offset = 0;
+            if (result.startsWith("offset=")) {
+                int space = result.indexOf(' ');
+                offset = Long.parseLong(space < 0 ? result.substring(7) : result.substring(7, space));
+                result = space < 0 ? "" : result.substring(space + 1);
+            }
+            // ACK per nje version me te vjeter nuk e heq ndryshimin me te ri
+            String key = key(peer, fileToken);
+            Pending p = pending.get(key);
+            if (p != null && p.seq == seq && p.acknowledge(offset)) {
+                pending.remove(key, p);
+            }
+            if (result.startsWith("ERR") && !result.startsWith("ERR File not found")) {
+                System.err.println("Replica " + peer + " rejected update: " + result);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    private void retryLoop() {
+        while (running) {
+            try {
+                Thread.sleep(ServerConfig.REPLICATION_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+                Pending p = entry.getValue();
+                synchronized (p) {
+                    // pjeset ridergohen sa kohe qe ka perparim; heqja behet pas disa raundeve pa asnje ACK
+                    if (p.attempts >= ServerConfig.REPLICATION_MAX_ATTEMPTS) {
+                        pending.remove(entry.getKey(), p);
+                        String first = p.messages.get(0);
+                        System.err.println("Replica " + p.peer + " unreachable, giving up on: "
+                                + first.substring(0, Math.min(60, first.length())));
+                        continue;
+                    }
+                    p.attempts++;
+                    for (int i = p.acked.nextClearBit(0); i < p.nextUnsent; i = p.acked.nextClearBit(i + 1)) {
+                        send(p.messages.get(i), p.peer);
+                    }
+                }
+            }
+        }
+    }
+
+    public String buildStats() {
+        if (!isEnabled()) {
+            return "";
+        }
+        return "Replication: " + peers.size() + " peer(s), " + pending.size() + " pending, "
+                + chunkedMutations.get() + " sent in chunks, " + refusedMutations.get() + " refused (too large), "
+                + rejectedMessages.get() + " rejected (bad mac)\n";
+    }
+
+    // ================== AUTENTIKIMI ==================
+    // "<TYPE> <seq> <rest>" -> "<TYPE> <seq> mac=<hex> <rest>"; mac llogaritet mbi mesazhin pa fushen mac
+    private void send(String message, SocketAddress to) {
+        if (secret == null) {
+            sender.accept(message, to);
+            return;
+        }
+        int afterSeq = message.indexOf(' ', message.indexOf(' ') + 1);
+        sender.accept(message.substring(0, afterSeq + 1) + MAC_PREFIX + mac(message) + message.substring(afterSeq), to);
+    }
+
+    // kthen mesazhin pa fushen mac, ose null kur mac mungon ose nuk perputhet
+    private String verify(String message) {
+        if (secret == null) {
+            return message;
+        }
+        int afterType = message.indexOf(' ');
+        int afterSeq = message.indexOf(' ', afterType + 1);
+        int afterMac = afterSeq < 0 ? -1 : message.indexOf(' ', afterSeq + 1);
+        if (afterMac < 0 || !message.startsWith(MAC_PREFIX, afterSeq + 1)) {
+            rejectedMessages.incrementAndGet();
+            return null;
+        }
+        String unsigned = message.substring(0, afterSeq) + message.substring(afterMac);
+        byte[] expected = mac(unsigned).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = message.substring(afterSeq + 1 + MAC_PREFIX.length(), afterMac).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            rejectedMessages.incrementAndGet();
+            return null;
+        }
+        return unsigned;
+    }
+
+    private String mac(String message) {
+        try {
+            Mac hmac = Mac.getInstance("HmacSHA256");
+            hmac.init(secret);
+            byte[] digest = hmac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, MAC_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int macFieldBytes() {
+        return secret == null ? 0 : MAC_FIELD_BYTES;
+    }
+
+    private static String key(InetSocketAddress peer, String fileName) {
+        return peer.getAddress().getHostAddress() + ":" + peer.getPort() + "#" + fileName;
+    }
+
+    // argumenti i pare pas komandes, me ose pa thonjeza
+    private static String fileToken(String command) {
+        int space = command.indexOf(' ');
+        if (space < 0) {
+            return "";
+        }
+        String rest = command.substring(space + 1);
+        if (rest.startsWith("\"")) {
+            int end = rest.indexOf('"', 1);
+            return end > 0 ? rest.substring(1, end) : rest.substring(1);
+        }
+        int end = rest.indexOf(' ');
+        return end < 0 ? rest : rest.substring(0, end);
+    }
+
+    private static String quote(String fileName) {
+        return fileName.contains(" ") ? '"' + fileName + '"' : fileName;
+    }
+
+    private final class Pending {
+        private final InetSocketAddress peer;
+        private final long seq;
+        private final List<String> messages;
+        private final int chunkSize;
+        private final BitSet acked = new BitSet();
+        private int nextUnsent;
+        private int attempts = 1;
+
+        private Pending(InetSocketAddress peer, long seq, Mutation mutation) {
+            this.peer = peer;
+            this.seq = seq;
+            this.messages = mutation.messages();
+            this.chunkSize = mutation.chunkSize();
+        }
+
+        // true kur te gjitha pjeset jane konfirmuar; offset 0 per ndryshimet me nje mesazh
+        private synchronized boolean acknowledge(long offset) {
+            long index = chunkSize == 0 ? 0 : offset / chunkSize;
+            if (index >= nextUnsent || (chunkSize > 0 && offset % chunkSize != 0)) {
+                return false;
+            }
+            if (!acked.get((int) index)) {
+                attempts = 1;
+                acked.set((int) index);
+                sendWindow(this);
+            }
+            return acked.cardinality() == messages.size();
+        }
+    }
+
+    // pjeset e marra te nje file-i te madh nga nje nyje
+    private static final class Assembly {
+        private final long seq;
+        private final byte[] content;
+        private final Set<Long> received = new HashSet<>();   // offset-et e pjeseve
+        private long receivedBytes;
+
+        private Assembly(long seq, int total) {
+            this.seq = seq;
+            this.content = new byte[total];
+        }
+    }
+
+    // "/upload <file> offset=<n> total=<t> <base64>"; null per nje komande te zakonshme
+    private record Chunk(long offset, long total, String base64) {
+        private static Chunk parse(String command, String fileName) {
+            if (!command.startsWith(ServerConfig.CMD_UPLOAD + " ")) {
+                return null;
+            }
+            String rest = command.substring(ServerConfig.CMD_UPLOAD.length() + 1 + quote(fileName).length()).stripLeading();
+            String[] parts = rest.split(" ", 3);
+            if (parts.length < 3 || !parts[0].startsWith("offset=") || !parts[1].startsWith("total=")) {
+                return null;
+            }
+            try {
+                return new Chunk(Long.parseLong(parts[0].substring(7)), Long.parseLong(parts[1].substring(6)), parts[2]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
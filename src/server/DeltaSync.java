@@ -0,0 +1,327 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sinkronizim rsync-style: serveri kthen nenshkrimet e blloqeve (checksum i dobet rrotullues + hash i forte),
+ * klienti dergon vetem blloqet e ndryshuara dhe instruksionet COPY, serveri e rindërton file-in.
+ */
+public final class DeltaSync {
+
+    private static final byte OP_COPY = 0;
+    private static final byte OP_LITERAL = 1;
+    private static final byte OP_COPY_RUN = 2;
+    private static final int SIGNATURE_LINE_MAX = 53;  // "<index:10> <weak:8> <md5:32>\n"
+
+    private DeltaSync() {
+    }
+
+    public record BlockSignature(int index, int weak, String strong) {
+    }
+
+    public record Signature(int blockSize, long size, List<BlockSignature> blocks) {
+    }
+
+    public record PatchResult(byte[] data, int literalBytes, int copiedBlocks) {
+    }
+
+    // ============================
+    //   NENSHKRIMET (SERVERI)
+    // ============================
+
+    public static Signature signature(byte[] data, int blockSize) {
+        return signature(data, blockSize, 0, Integer.MAX_VALUE);
+    }
+
+    // vetem blloqet [fromBlock, fromBlock + maxBlocks) - nje faqe e /signature
+    public static Signature signature(byte[] data, int blockSize, int fromBlock, int maxBlocks) {
+        List<BlockSignature> blocks = new ArrayList<>();
+        long start = (long) fromBlock * blockSize;
+        for (int index = fromBlock; start < data.length && blocks.size() < maxBlocks; start += blockSize, index++) {
+            int offset = (int) start;
+            int len = Math.min(blockSize, data.length - offset);
+            blocks.add(new BlockSignature(index, weakChecksum(data, offset, len), strongHash(data, offset, len)));
+        }
+        return new Signature(blockSize, data.length, blocks);
+    }
+
+    // sa blloqe hyjne ne nje faqe prej pageBytes pas kokes
+    public static int blocksPerPage(int pageBytes, int headerBytes) {
+        return Math.max(1, (pageBytes - headerBytes) / SIGNATURE_LINE_MAX);
+    }
+
+    public static String formatSignature(String fileName, Signature signature) {
+        return formatSignature(fileName, signature, -1);
+    }
+
+    // DATA_SIGNATURE\nblock=<n>\nsize=<n>\n<index> <weak> <strong> ...[\nnext=<bllok>]
+    public static String formatSignature(String fileName, Signature signature, int nextBlock) {
+        StringBuilder sb = new StringBuilder(signatureHeader(fileName, signature));
+        for (BlockSignature block : signature.blocks()) {
+            sb.append(block.index()).append(' ')
+                    .append(Integer.toHexString(block.weak())).append(' ')
+                    .append(block.strong()).append("\n");
+        }
+        if (nextBlock >= 0) {
+            sb.append("next=").append(nextBlock);
+        }
+        return sb.toString();
+    }
+
+    public static String signatureHeader(String fileName, Signature signature) {
+        return "DATA_SIGNATURE\nfilename=" + fileName
+                + "\nblock=" + signature.blockSize()
+                + "\nsize=" + signature.size() + "\n";
+    }
+
+    // blloku nga i cili vazhdon faqja tjeter; -1 kur kjo ishte e fundit
+    public static int nextSignatureBlock(String response) {
+        int at = response.lastIndexOf("\nnext=");
+        if (at < 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(response.substring(at + "\nnext=".length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public static Signature parseSignature(String response) {
+        if (response == null || !response.startsWith("DATA_SIGNATURE")) {
+            return null;
+        }
+        String[] lines = response.replace("\r", "").split("\n");
+        int blockSize = -1;
+        long size = -1;
+        List<BlockSignature> blocks = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("filename=") || line.startsWith("next=")) {
+                continue;
+            }
+            if (line.startsWith("block=")) {
+                blockSize = Integer.parseInt(line.substring("block=".length()));
+            } else if (line.startsWith("size=")) {
+                size = Long.parseLong(line.substring("size=".length()));
+            } else {
+                String[] parts = line.split(" ");
+                if (parts.length != 3) {
+                    return null;
+                }
+                blocks.add(new BlockSignature(Integer.parseInt(parts[0]),
+                        Integer.parseUnsignedInt(parts[1], 16), parts[2]));
+            }
+        }
+        if (blockSize <= 0 || size < 0) {
+            return null;
+        }
+        return new Signature(blockSize, size, blocks);
+    }
+
+    // ============================
+    //   DELTA (KLIENTI)
+    // ============================
+
+    // Formati binar: [len:int][md5:16][op...];
+    // op = COPY <index:int> | COPY_RUN <index:int><count:int> | LITERAL <len:int><bytes>
+    // blloqet e njepasnjeshme kopjohen me nje COPY_RUN, qe delta e nje file-i te madh te hyje ne nje datagram
+    public static byte[] computeDelta(byte[] target, Signature signature) {
+        int blockSize = signature.blockSize();
+        Map<Integer, List<BlockSignature>> byWeak = new HashMap<>();
+        for (BlockSignature block : signature.blocks()) {
+            // vetem blloqet e plota perdoren per perputhje me dritare rrotulluese
+            if ((long) (block.index() + 1) * blockSize <= signature.size()) {
+                byWeak.computeIfAbsent(block.weak(), k -> new ArrayList<>()).add(block);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(target.length);
+            out.write(md5(target, 0, target.length));
+
+            int literalStart = 0;
+            int runStart = -1;
+            int runCount = 0;
+            int pos = 0;
+            int a = 0;
+            int b = 0;
+            boolean windowValid = false;
+            while (!byWeak.isEmpty() && pos + blockSize <= target.length) {
+                if (!windowValid) {
+                    int weak = weakChecksum(target, pos, blockSize);
+                    a = weak & 0xFFFF;
+                    b = weak >>> 16;
+                    windowValid = true;
+                }
+                int weak = (b << 16) | a;
+                BlockSignature match = findMatch(byWeak.get(weak), target, pos, blockSize);
+                if (match != null) {
+                    if (literalStart < pos || match.index() != runStart + runCount) {
+                        writeRun(out, runStart, runCount);
+                        writeLiteral(out, target, literalStart, pos);
+                        runStart = match.index();
+                        runCount = 0;
+                    }
+                    runCount++;
+                    pos += blockSize;
+                    literalStart = pos;
+                    windowValid = false;
+                    continue;
+                }
+                if (pos + blockSize >= target.length) {
+                    break;
+                }
+                // rrotullo dritaren me nje bajt
+                int outByte = target[pos] & 0xFF;
+                int inByte = target[pos + blockSize] & 0xFF;
+                a = (a - outByte + inByte) & 0xFFFF;
+                b = (b - blockSize * outByte + a) & 0xFFFF;
+                pos++;
+            }
+            writeRun(out, runStart, runCount);
+            writeLiteral(out, target, literalStart, target.length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // ============================
+    //   RINDERTIMI (SERVERI)
+    // ============================
+
+    public static PatchResult applyDelta(byte[] base, int blockSize, byte[] delta) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta))) {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid delta length");
+            }
+            // gjatesia vjen nga klienti: buffer-i nuk paraalokohet dhe rritet vetem deri ne kufi
+            if (length > ServerConfig.MAX_PATCH_BYTES) {
+                throw new IOException("Delta length " + length + " exceeds " + ServerConfig.MAX_PATCH_BYTES + " bytes");
+            }
+            byte[] expectedMd5 = in.readNBytes(16);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int literalBytes = 0;
+            int copiedBlocks = 0;
+            while (in.available() > 0) {
+                byte op = in.readByte();
+                if (op == OP_COPY) {
+                    int index = in.readInt();
+                    long offset = (long) index * blockSize;
+                    if (index < 0 || offset >= base.length) {
+                        throw new IOException("Invalid block index " + index);
+                    }
+                    out.write(base, (int) offset, (int) Math.min(blockSize, base.length - offset));
+                    copiedBlocks++;
+                } else if (op == OP_COPY_RUN) {
+                    int index = in.readInt();
+                    int count = in.readInt();
+                    long offset = (long) index * blockSize;
+                    long end = Math.min(base.length, offset + (long) count * blockSize);
+                    if (index < 0 || count <= 0 || offset >= base.length || end - offset > length - out.size()) {
+                        throw new IOException("Invalid block run " + index + "+" + count);
+                    }
+                    out.write(base, (int) offset, (int) (end - offset));
+                    copiedBlocks += count;
+                } else if (op == OP_LITERAL) {
+                    int len = in.readInt();
+                    if (len < 0 || len > in.available()) {
+                        throw new IOException("Invalid literal length");
+                    }
+                    out.write(in.readNBytes(len));
+                    literalBytes += len;
+                } else {
+                    throw new IOException("Unknown delta op " + op);
+                }
+                if (out.size() > length) {
+                    throw new IOException("Delta produces more than " + length + " bytes");
+                }
+            }
+            byte[] result = out.toByteArray();
+            if (result.length != length || !MessageDigest.isEqual(expectedMd5, md5(result, 0, result.length))) {
+                throw new IOException("Delta checksum mismatch");
+            }
+            return new PatchResult(result, literalBytes, copiedBlocks);
+        }
+    }
+
+    // ============================
+    //   CHECKSUMS
+    // ============================
+
+    // checksum i dobet si te rsync: a = sum(x), b = sum((L - i) * x), te dyja mod 2^16
+    public static int weakChecksum(byte[] data, int offset, int len) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < len; i++) {
+            int value = data[offset + i] & 0xFF;
+            a += value;
+            b += (len - i) * value;
+        }
+        return ((b & 0xFFFF) << 16) | (a & 0xFFFF);
+    }
+
+    public static String strongHash(byte[] data, int offset, int len) {
+        return HexFormat.of().formatHex(md5(data, offset, len));
+    }
+
+    private static BlockSignature findMatch(List<BlockSignature> candidates, byte[] data, int pos, int len) {
+        if (candidates == null) {
+            return null;
+        }
+        String strong = strongHash(data, pos, len);
+        for (BlockSignature candidate : candidates) {
+            if (candidate.strong().equals(strong)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static void writeRun(DataOutputStream out, int start, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (count == 1) {
+            out.writeByte(OP_COPY);
+            out.writeInt(start);
+        } else {
+            out.writeByte(OP_COPY_RUN);
+            out.writeInt(start);
+            out.writeInt(count);
+        }
+    }
+
+    private static void writeLiteral(DataOutputStream out, byte[] data, int from, int to) throws IOException {
+        if (to <= from) {
+            return;
+        }
+        out.writeByte(OP_LITERAL);
+        out.writeInt(to - from);
+        out.write(data, from, to - from);
+    }
+
+    private static byte[] md5(byte[] data, int offset, int len) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(data, offset, len);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
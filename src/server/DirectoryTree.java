@@ -0,0 +1,223 @@
+package server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Pema e direktoriumeve nen server_files. Per çdo direktorium mbahet agregati i nen-pemes
+ * (numri i file-ve dhe bajtet), i cili perditesohet ne çdo upload/delete, qe /du te mos e rikaloje pemen.
+ * Ecjet e plota (ne start dhe per /list -r) behen paralelisht me ForkJoinPool, nje detyre per direktorium.
+ * Lista e renditur e /list -r ruhet per direktorium bashke me mtime e çdo direktoriumi te ecur dhe
+ * rindertohet vetem kur njeri prej tyre ndryshon (shtim/fshirje emri) ose pas nje upload/delete tonin.
+ */
+public class DirectoryTree {
+
+    public record Usage(long files, long bytes) {
+        Usage plus(Usage other) {
+            return new Usage(files + other.files, bytes + other.bytes);
+        }
+    }
+
+    private static final Path ROOT = Path.of("");
+
+    private final Path root;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // direktoriumi relativ -> agregati i nen-pemes se tij
+    private final Map<Path, Usage> aggregates = new ConcurrentHashMap<>();
+    // direktoriumi relativ -> lista e renditur e /list -r
+    private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+
+    private record Listing(NavigableSet<String> names, Map<Path, Long> dirStamps) {
+    }
+
+    public DirectoryTree(Path root) {
+        this.root = root;
+    }
+
+    // ecja fillestare: mbush agregatet per te gjithe pemen
+    public void build() throws IOException {
+        aggregates.clear();
+        invoke(new UsageTask(root));
+    }
+
+    // ================== PERDITESIMI ==================
+    // madhesia -1 do te thote "nuk ekziston" (para krijimit ose pas fshirjes)
+    public void applyChange(Path file, long oldSize, long newSize) {
+        Usage delta = new Usage((newSize >= 0 ? 1 : 0) - (oldSize >= 0 ? 1 : 0),
+                Math.max(newSize, 0) - Math.max(oldSize, 0));
+        if (delta.files() == 0 && delta.bytes() == 0) {
+            return;
+        }
+        Path dir = relative(file).getParent();
+        while (true) {
+            aggregates.merge(dir == null ? ROOT : dir, delta, Usage::plus);
+            if (delta.files() != 0) {
+                listings.remove(dir == null ? ROOT : dir);
+            }
+            if (dir == null) {
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    // ================== LEXIMI ==================
+    public Usage usage(Path dir) throws IOException {
+        Usage cached = aggregates.get(relative(dir));
+        if (cached != null) {
+            return cached;
+        }
+        // direktorium i krijuar jashte serverit: llogaritet nje here dhe ruhet
+        return invoke(new UsageTask(dir));
+    }
+
+    // nen-direktoriumet e drejtperdrejta te dir, me agregatet e tyre
+    public Map<Path, Usage> children(Path dir) throws IOException {
+        Map<Path, Usage> result = new TreeMap<>();
+        try (var stream = Files.list(dir)) {
+            for (Path child : stream.filter(Files::isDirectory).toList()) {
+                result.put(relative(child), usage(child));
+            }
+        }
+        return result;
+    }
+
+    // te gjithe file-t nen dir, si emra relativ ndaj server_files, ne rend; faqet e /list -r lexojne te njejten liste
+    public NavigableSet<String> sortedListing(Path dir) throws IOException {
+        Path key = relative(dir);
+        Listing cached = listings.get(key);
+        if (cached != null && isCurrent(cached)) {
+            return cached.names();
+        }
+        Map<Path, Long> stamps = new ConcurrentHashMap<>();
+        NavigableSet<String> names = Collections.unmodifiableNavigableSet(new TreeSet<>(invoke(new ListTask(dir, stamps))));
+        listings.put(key, new Listing(names, stamps));
+        return names;
+    }
+
+    private boolean isCurrent(Listing listing) {
+        for (Map.Entry<Path, Long> stamp : listing.dirStamps().entrySet()) {
+            try {
+                if (Files.getLastModifiedTime(root.resolve(stamp.getKey())).toMillis() != stamp.getValue()) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false; // direktoriumi u fshi
+            }
+        }
+        return true;
+    }
+
+    public String relativeName(Path path) {
+        return relative(path).toString().replace('\\', '/');
+    }
+
+    // ============================
+    //   DETYRAT FORK/JOIN
+    // ============================
+
+    private final class UsageTask extends RecursiveTask<Usage> {
+        private static final long serialVersionUID = 1L;
+        private final Path dir;
+
+        private UsageTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected Usage compute() {
+            Usage own = new Usage(0, 0);
+            List<UsageTask> subtasks = new ArrayList<>();
+            try (var stream = Files.list(dir)) {
+                for (Path entry : stream.toList()) {
+                    if (Files.isDirectory(entry)) {
+                        UsageTask task = new UsageTask(entry);
+                        task.fork();
+                        subtasks.add(task);
+                    } else if (Files.isRegularFile(entry)) {
+                        own = own.plus(new Usage(1, Files.size(entry)));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (UsageTask task : subtasks) {
+                own = own.plus(task.join());
+            }
+            aggregates.put(relative(dir), own);
+            return own;
+        }
+    }
+
+    private final class ListTask extends RecursiveTask<List<String>> {
+        private static final long serialVersionUID = 1L;
+        private final Path dir;
+        private final Map<Path, Long> stamps;
+
+        private ListTask(Path dir, Map<Path, Long> stamps) {
+            this.dir = dir;
+            this.stamps = stamps;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> names = new ArrayList<>();
+            List<ListTask> subtasks = new ArrayList<>();
+            try {
+                // mtime merret para leximit: ndryshimi gjate ecjes e ben listen te vjeteruar menjehere
+                stamps.put(relative(dir), Files.getLastModifiedTime(dir).toMillis());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try (var stream = Files.list(dir)) {
+                for (Path entry : stream.toList()) {
+                    if (Files.isDirectory(entry)) {
+                        ListTask task = new ListTask(entry, stamps);
+                        task.fork();
+                        subtasks.add(task);
+                    } else if (Files.isRegularFile(entry)) {
+                        names.add(relativeName(entry));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (ListTask task : subtasks) {
+                names.addAll(task.join());
+            }
+            return names;
+        }
+    }
+
+    private <T> T invoke(RecursiveTask<T> task) throws IOException {
+        try {
+            return pool.invoke(task);
+        } catch (UncheckedIOException e) {
+            // ForkJoin mund ta mbeshtjelle perjashtimin edhe nje here kur e rihedh ne thread-in thirres
+            Throwable cause = e;
+            while (cause instanceof UncheckedIOException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    private Path relative(Path path) {
+        return root.relativize(path.toAbsolutePath().normalize());
+    }
+}
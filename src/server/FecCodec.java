@@ -0,0 +1,117 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * FEC me paritet XOR per shkarkimet: nje grup ka k pjese te dhenash me madhesi shard dhe nje pjese pariteti.
+ * Klienti rindertonte çdo pjese te vetme te humbur pa pritur ritransmetimin.
+ * Datagrami: DATA_FEC offset=<fillimi i grupit> index=<i> count=<k> shard=<bajte> total=<madhesia e file-it>
+ * crc32c=<crc i pjeses> file-crc32c=<crc i file-it>\n<base64>; index == count eshte pariteti.
+ */
+public final class FecCodec {
+
+    public static final String DATA_FEC = "DATA_FEC";
+
+    private FecCodec() {
+    }
+
+    public record Shard(long groupOffset, int index, int count, int shardSize, long total, String fileCrc, byte[] data) {
+        public boolean isParity() {
+            return index == count;
+        }
+    }
+
+    // /download <file> ... fec=<k>
+    public static boolean isFecRequest(String command) {
+        return command.startsWith(ServerConfig.CMD_DOWNLOAD + " ") && command.contains(" fec=");
+    }
+
+    // ================== KODIMI (SERVERI) ==================
+    public static List<String> encodeGroup(long groupOffset, byte[][] shards, int shardSize, long total, String fileCrc) {
+        byte[] parity = new byte[shardSize];
+        for (byte[] shard : shards) {
+            for (int i = 0; i < shard.length; i++) {
+                parity[i] ^= shard[i];
+            }
+        }
+        List<String> datagrams = new ArrayList<>(shards.length + 1);
+        for (int i = 0; i <= shards.length; i++) {
+            byte[] data = i < shards.length ? shards[i] : parity;
+            datagrams.add(DATA_FEC + " offset=" + groupOffset + " index=" + i + " count=" + shards.length
+                    + " shard=" + shardSize + " total=" + total + " crc32c=" + String.format("%08x", FileCatalog.crc32c(data))
+                    + " file-crc32c=" + fileCrc + "\n" + Base64.getEncoder().encodeToString(data));
+        }
+        return datagrams;
+    }
+
+    // ================== DEKODIMI (KLIENTI) ==================
+    // kthen null per datagrame te tjere ose te demtuar (crc gabim = pjese e humbur)
+    public static Shard parse(String datagram) {
+        if (datagram == null || !datagram.startsWith(DATA_FEC + " ")) {
+            return null;
+        }
+        int newline = datagram.indexOf('\n');
+        if (newline < 0) {
+            return null;
+        }
+        long offset = -1;
+        long total = -1;
+        int index = -1;
+        int count = -1;
+        int shardSize = -1;
+        String crc = null;
+        String fileCrc = null;
+        try {
+            for (String token : datagram.substring(DATA_FEC.length() + 1, newline).split(" ")) {
+                int eq = token.indexOf('=');
+                if (eq <= 0) {
+                    continue;
+                }
+                String value = token.substring(eq + 1);
+                switch (token.substring(0, eq)) {
+                    case "offset" -> offset = Long.parseLong(value);
+                    case "index" -> index = Integer.parseInt(value);
+                    case "count" -> count = Integer.parseInt(value);
+                    case "shard" -> shardSize = Integer.parseInt(value);
+                    case "total" -> total = Long.parseLong(value);
+                    case "crc32c" -> crc = value;
+                    case "file-crc32c" -> fileCrc = value;
+                    default -> {
+                    }
+                }
+            }
+            byte[] data = Base64.getDecoder().decode(datagram.substring(newline + 1).trim());
+            if (offset < 0 || index < 0 || count <= 0 || index > count || shardSize <= 0
+                    || (crc != null && !crc.equals(String.format("%08x", FileCatalog.crc32c(data))))) {
+                return null;
+            }
+            return new Shard(offset, index, count, shardSize, total, fileCrc, data);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // gjatesia e pjeses i ne grup (pjesa e fundit e file-it mund te jete me e shkurter)
+    public static int shardLength(long groupOffset, int index, int shardSize, long total) {
+        long start = groupOffset + (long) index * shardSize;
+        return (int) Math.max(0, Math.min(shardSize, total - start));
+    }
+
+    // rindertimi i nje pjese te vetme te humbur: XOR i paritetit me te gjitha pjeset e tjera
+    public static byte[] recover(byte[][] shards, byte[] parity, int missing, long groupOffset, int shardSize, long total) {
+        byte[] rebuilt = parity.clone();
+        for (int i = 0; i < shards.length; i++) {
+            if (i == missing) {
+                continue;
+            }
+            for (int j = 0; j < shards[i].length; j++) {
+                rebuilt[j] ^= shards[i][j];
+            }
+        }
+        byte[] result = new byte[shardLength(groupOffset, missing, shardSize, total)];
+        System.arraycopy(rebuilt, 0, result, 0, result.length);
+        return result;
+    }
+}
@@ -0,0 +1,208 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Katalogu i metadatave te server_files: madhesia, mtime, tekst/binar dhe CRC32C per çdo file.
+ * Llogaritet nje here (ose nga bajtet e upload-it), ruhet ne nje file binar dhe lexohet shpejt ne start;
+ * /info dhe kontrolli tekst/binar i /read sherbehen nga memoria pas nje leximi te atributeve qe
+ * zbulon file-t e fshira ose te ndryshuara jashte serverit.
+ */
+public class FileCatalog {
+
+    private static final int MAGIC = 0x46434154; // "FCAT"
+    private static final int VERSION = 1;
+
+    public record Entry(long size, long modified, boolean text, int crc32c) {
+        public String crcHex() {
+            return String.format("%08x", crc32c);
+        }
+    }
+
+    private final Path root;
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    public FileCatalog(Path root, Path file) {
+        this.root = root;
+        this.file = file.toAbsolutePath().normalize();
+    }
+
+    // ngarkim i shpejte pa prekur file-t; verify() i kontrollon me vone ne sfond
+    public void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Ignoring unknown catalog format: " + file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                entries.put(name, new Entry(in.readLong(), in.readLong(), in.readBoolean(), in.readInt()));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load catalog, rebuilding lazily: " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    public void start() {
+        Thread t = new Thread(() -> {
+            verify();
+            while (true) {
+                try {
+                    Thread.sleep(ServerConfig.CATALOG_FLUSH_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                flush();
+            }
+        }, "file-catalog");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ================== LEXIMI ==================
+    // hyrja e katalogut; rillogaritet kur mungon ose kur madhesia/mtime ne disk ndryshojne (ndryshim i jashtem);
+    // NoSuchFileException kur file-i nuk ekziston me
+    public Entry get(Path path) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            remove(path);
+            throw e;
+        }
+        Entry entry = entries.get(key(path));
+        if (entry != null && entry.size() == attrs.size() && entry.modified() == attrs.lastModifiedTime().toMillis()) {
+            return entry;
+        }
+        return refresh(path, attrs);
+    }
+
+    // ================== PERDITESIMI ==================
+    // thirret pas upload/patch me bajtet qe sapo u shkruan, pa e rilexuar file-in
+    public Entry put(Path path, byte[] data) throws IOException {
+        Entry entry = new Entry(data.length, Files.getLastModifiedTime(path).toMillis(),
+                isProbablyText(data, data.length), crc32c(data));
+        entries.put(key(path), entry);
+        dirty = true;
+        return entry;
+    }
+
+    public void remove(Path path) {
+        if (entries.remove(key(path)) != null) {
+            dirty = true;
+        }
+    }
+
+    public Entry refresh(Path path) throws IOException {
+        return refresh(path, Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    private Entry refresh(Path path, BasicFileAttributes attrs) throws IOException {
+        if (!attrs.isRegularFile()) {
+            throw new NoSuchFileException(path.toString());
+        }
+        CRC32C crc = new CRC32C();
+        boolean text = true;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+                text = text && isProbablyText(buffer, read);
+            }
+        }
+        Entry entry = new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), text, (int) crc.getValue());
+        entries.put(key(path), entry);
+        dirty = true;
+        return entry;
+    }
+
+    // ================== QENDRUESHMERIA ==================
+    // hyrjet e file-ve te fshira ose te ndryshuara jashte serverit hiqen ose rillogariten
+    private void verify() {
+        for (Map.Entry<String, Entry> cached : entries.entrySet()) {
+            Path path = root.resolve(cached.getKey());
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attrs.size() != cached.getValue().size()
+                        || attrs.lastModifiedTime().toMillis() != cached.getValue().modified()) {
+                    refresh(path, attrs);
+                }
+            } catch (NoSuchFileException e) {
+                remove(path);
+            } catch (IOException e) {
+                System.err.println("Failed to verify " + path + ": " + e.getMessage());
+            }
+        }
+        flush();
+    }
+
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                var snapshot = Map.copyOf(entries);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().size());
+                    out.writeLong(e.getValue().modified());
+                    out.writeBoolean(e.getValue().text());
+                    out.writeInt(e.getValue().crc32c());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("Failed to save catalog: " + e.getMessage());
+        }
+    }
+
+    public static int crc32c(byte[] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static boolean isProbablyText(byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            int value = data[i] & 0xFF;
+            if (value == 0 || value < 0x08) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String key(Path path) {
+        return root.relativize(path.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+}
@@ -2,14 +2,31 @@ package server;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.nio.file.Files;
 import java.util.Base64;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Comparator;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class FileCommandHandler {
@@ -17,37 +34,101 @@ public class FileCommandHandler {
     private final Path serverDir;
     private final Path uploadDir;
     private final Path downloadDir;
+    private final BlobStore blobStore;
+    private final DirectoryTree tree;
+    private final FileCatalog catalog;
+    // kopjet ne uploads krijohen ne sfond, pasi pergjigjja per upload-in eshte derguar
+    private final ExecutorService mirrorWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "uploads-mirror");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ThreadLocal<Boolean> replicating = new ThreadLocal<>();
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+    private volatile long indexedDirModified = Long.MIN_VALUE;
+    private static final Set<String> PAGE_OPTIONS = Set.of("limit", "cursor", "fields");
+    private volatile MutationListener mutationListener;
+
+    // njoftohet pas çdo ndryshimi te server_files (p.sh. per replikim ne klaster)
+    @FunctionalInterface
+    public interface MutationListener {
+        void onMutation(String fileName, Path file, boolean deleted);
+    }
 
     public FileCommandHandler() {
         this("data/server_files", "data/uploads", "data/downloads");
     }
 
     public FileCommandHandler(String serverPath, String uploadPath, String downloadPath) {
+        this(serverPath, uploadPath, downloadPath, ServerConfig.BLOBS_DIR);
+    }
+
+    public FileCommandHandler(String serverPath, String uploadPath, String downloadPath, String blobPath) {
         try {
             this.serverDir = ensureDir(serverPath);
             this.uploadDir = ensureDir(uploadPath);
             this.downloadDir = ensureDir(downloadPath);
+            this.blobStore = new BlobStore(blobPath);
+            this.tree = new DirectoryTree(serverDir);
+            tree.build();
+            this.catalog = new FileCatalog(serverDir, Paths.get(blobPath).toAbsolutePath().resolveSibling(ServerConfig.CATALOG_FILE));
+            catalog.load();
+            catalog.start();
         } catch (IOException e) {
             throw new IllegalStateException("Nuk mund të krijohen direktoriumet e serverit", e);
         }
     }
 
 
+    public Path getServerDir() {
+        return serverDir;
+    }
+
+    public void setMutationListener(MutationListener listener) {
+        this.mutationListener = listener;
+    }
+
+    // komande e ardhur nga nje nyje tjeter: ekzekutohet si ADMIN dhe nuk replikohet perseri
+    public String handleReplicated(String commandLine) {
+        replicating.set(Boolean.TRUE);
+        try {
+            return handle(commandLine, "ADMIN");
+        } finally {
+            replicating.remove();
+        }
+    }
+
     public String handle(String commandLine, String role) {
+        return handle(commandLine, role, ServerConfig.DATAGRAM_MAX);
+    }
+
+    // datagramBytes: madhesia e datagrameve e negociuar nga sesioni (/mtu); percakton madhesine e faqeve
+    public String handle(String commandLine, String role, int datagramBytes) {
+        ServerEvents.CommandEvent event = new ServerEvents.CommandEvent();
+        event.begin();
+        String response = dispatch(commandLine, role, datagramBytes);
+        if (commandLine != null) {
+            ServerEvents.commitCommand(event, commandLine.trim(), List.of(response));
+        }
+        return response;
+    }
+
+    private String dispatch(String commandLine, String role, int datagramBytes) {
         if (commandLine == null || commandLine.isBlank()) {
             return "ERR Empty command";
         }
 
 
         String cmd = commandLine.trim();
+        int pageBytes = ServerConfig.pageBytesFor(datagramBytes);
 
         try {
             if (cmd.startsWith("/list")) {
-                return handleList();
+                return handleList(cmd, pageBytes);
             }
 
             if (cmd.startsWith("/read")) {
-                return handleRead(cmd);
+                return handleRead(cmd, datagramBytes);
             }
 
             if (cmd.startsWith("/info")) {
@@ -55,7 +136,15 @@ public class FileCommandHandler {
             }
 
             if (cmd.startsWith("/search")) {
-                return handleSearch(cmd);
+                return handleSearch(cmd, pageBytes);
+            }
+
+            if (cmd.startsWith(ServerConfig.CMD_DU)) {
+                return handleDu(cmd, pageBytes);
+            }
+
+            if (cmd.startsWith(ServerConfig.CMD_SIGNATURE)) {
+                return handleSignature(cmd, pageBytes);
             }
 
 
@@ -63,7 +152,8 @@ public class FileCommandHandler {
                 // nëse nuk është admin e provon njërën prej këtyre:
                 if (cmd.startsWith("/upload") ||
                         cmd.startsWith("/download") ||
-                        cmd.startsWith("/delete")) {
+                        cmd.startsWith("/delete") ||
+                        cmd.startsWith(ServerConfig.CMD_PATCH)) {
                     return "ERR Permission denied (admin only)";
                 }
             }
@@ -77,7 +167,11 @@ public class FileCommandHandler {
             }
 
             if (cmd.startsWith("/download")) {
-                return handleDownload(cmd);
+                return handleDownload(cmd, datagramBytes);
+            }
+
+            if (cmd.startsWith(ServerConfig.CMD_PATCH)) {
+                return handlePatch(cmd);
             }
 
             return "ERR Unknown command";
@@ -92,39 +186,104 @@ public class FileCommandHandler {
     //   KOMANDAT READ-ONLY
     // ============================
 
-    // /list
-    private String handleList() throws IOException {
-        try (var stream = Files.list(serverDir)) {
-            List<String> files = stream
-                    .filter(Files::isRegularFile)
-                    .map(path -> path.getFileName().toString())
-                    .sorted(Comparator.naturalOrder())
-                    .collect(Collectors.toList());
+    // /list [-r [<dir>]] [limit=<n>] [cursor=<c>] [fields=name,size,mtime]
+    private String handleList(String cmd, int pageBytes) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        String remainder = extractOptions(cmd.trim().substring(ServerConfig.CMD_LIST.length()), options).trim();
+        if (remainder.equals("-r") || remainder.startsWith("-r ")) {
+            Path dir = resolveDir(remainder.substring(2));
+            if (dir == null) {
+                return "ERR Directory not found";
+            }
+            // ecja paralele e nen-pemes; faqet ndahen njesoj si te /list
+            return buildPage(options, tree.sortedListing(dir), name -> true, "(no files)", pageBytes);
+        }
+        if (!remainder.isBlank()) {
+            return "ERR Usage: /list [-r [<dir>]] [limit=<n>] [cursor=<c>] [fields=name,size,mtime]";
+        }
+        if (options.isEmpty()) {
+            NavigableSet<String> files = fileIndex();
             if (files.isEmpty()) {
                 return "DATA\n(no files)";
             }
             return "DATA\n" + String.join("\n", files);
         }
+        return buildPage(options, fileIndex(), name -> true, "(no files)", pageBytes);
     }
 
-    // /read filename
-    private String handleRead(String cmd) throws IOException {
-        String fileName = extractSingleArgument(cmd, ServerConfig.CMD_READ);
-        if (fileName == null) {
-            return "ERR Usage: /read <filename>";
+    // /du [<dir>] -> file-t dhe bajtet e nen-pemes, plus nen-direktoriumet e drejtperdrejta
+    private String handleDu(String cmd, int pageBytes) throws IOException {
+        String argument = cmd.trim().substring(ServerConfig.CMD_DU.length());
+        Path dir = resolveDir(argument);
+        if (dir == null) {
+            return "ERR Directory not found";
         }
+        StringBuilder sb = new StringBuilder("DATA\n");
+        appendUsage(sb, dir.equals(serverDir) ? "." : tree.relativeName(dir), tree.usage(dir));
+        for (Map.Entry<Path, DirectoryTree.Usage> child : tree.children(dir).entrySet()) {
+            if (sb.length() > pageBytes) {
+                sb.append("...\n");
+                break;
+            }
+            appendUsage(sb, child.getKey().toString().replace('\\', '/') + "/", child.getValue());
+        }
+        return sb.toString();
+    }
 
-        Path file = resolveWithin(serverDir, fileName);
+    private void appendUsage(StringBuilder sb, String name, DirectoryTree.Usage usage) {
+        sb.append(name).append('\t').append(usage.files()).append(" files\t")
+                .append(usage.bytes()).append(" bytes\n");
+    }
+
+    private Path resolveDir(String argument) throws IOException {
+        String name = unquote(argument.trim());
+        Path dir = name.isEmpty() || name.equals(".") ? serverDir : resolveWithin(serverDir, name);
+        return Files.isDirectory(dir) ? dir : null;
+    }
+
+    // /read filename [offset=<n>] [length=<n>]
+    // /read filename if-version=<v|*> -> NOT_MODIFIED kur klienti e ka versionin aktual ne cache
+    private String handleRead(String cmd, int datagramBytes) throws IOException {
+        String argument = extractSingleArgument(cmd, ServerConfig.CMD_READ);
+        if (argument == null) {
+            return "ERR Usage: /read <filename> [offset=<n>] [length=<n>] [if-version=<v>]";
+        }
+        RangeRequest range = parseRange(argument, datagramBytes);
+        if (range == null) {
+            return "ERR Invalid range";
+        }
+
+        Path file = resolveWithin(serverDir, range.fileName());
         if (!Files.isRegularFile(file)) {
             return "ERR File not found";
         }
+        if (range.ranged()) {
+            return buildRangeResponse(file, range);
+        }
+
+        String version = null;
+        if (range.ifVersion() != null) {
+            version = fileVersion(file);
+            if (version.equals(range.ifVersion())) {
+                return "NOT_MODIFIED version=" + version;
+            }
+        }
+        String versionSuffix = version != null ? " version=" + version : "";
 
-        byte[] bytes = Files.readAllBytes(file);
-        if (isProbablyText(bytes)) {
-            return "DATA\n" + new String(bytes, StandardCharsets.UTF_8);
+        byte[] bytes = blobStore.read(file, () -> Files.readAllBytes(file));
+        FileCatalog.Entry entry = catalog.get(file);
+        if (entry.text()) {
+            return "DATA" + versionSuffix + "\n" + new String(bytes, StandardCharsets.UTF_8);
         }
         String base64 = Base64.getEncoder().encodeToString(bytes);
-        return buildBase64Response(file, bytes, base64);
+        return buildBase64Response(file, bytes, base64).replaceFirst("DATA_BASE64", "DATA_BASE64" + versionSuffix);
+    }
+
+    // versioni = mtime + madhesia (hex) nga katalogu, i krahasuar me diskun; ndryshon me çdo upload/patch
+    // dhe me çdo ndryshim te jashtem
+    private String fileVersion(Path file) throws IOException {
+        FileCatalog.Entry entry = catalog.get(file);
+        return Long.toHexString(entry.modified()) + "-" + Long.toHexString(entry.size());
     }
 
     // /info filename
@@ -135,38 +294,254 @@ public class FileCommandHandler {
         }
 
         Path file = resolveWithin(serverDir, fileName);
-        if (!Files.isRegularFile(file)) {
+        FileCatalog.Entry entry;
+        try {
+            entry = catalog.get(file);
+        } catch (NoSuchFileException e) {
             return "ERR File not found";
         }
 
         StringBuilder sb = new StringBuilder();
         sb.append("Name: ").append(file.getFileName()).append("\n");
-        sb.append("Size: ").append(Files.size(file)).append(" bytes\n");
-        sb.append("LastModified: ").append(Files.getLastModifiedTime(file)).append("\n");;
+        sb.append("Size: ").append(entry.size()).append(" bytes\n");
+        sb.append("LastModified: ").append(FileTime.fromMillis(entry.modified())).append("\n");
+        sb.append("Type: ").append(entry.text() ? "text" : "binary").append("\n");
+        sb.append("CRC32C: ").append(entry.crcHex()).append("\n");
 
         return "DATA\n" + sb;
     }
 
     // /search keyword
-    private String handleSearch(String cmd) throws IOException {
-        String keyword = extractSingleArgument(cmd, ServerConfig.CMD_SEARCH);
-        if (keyword == null) {
-            return "ERR Usage: /search <keyword>";
+    private String handleSearch(String cmd, int pageBytes) throws IOException {
+        String argument = extractSingleArgument(cmd, ServerConfig.CMD_SEARCH);
+        if (argument == null) {
+            return "ERR Usage: /search <keyword> [limit=<n>] [cursor=<c>] [fields=...]";
+        }
+        Map<String, String> options = new HashMap<>();
+        String keyword = unquote(extractOptions(argument, options));
+        if (keyword.isEmpty()) {
+            return "ERR Usage: /search <keyword> [limit=<n>] [cursor=<c>] [fields=...]";
         }
 
         String lowerKeyword = keyword.toLowerCase(Locale.ROOT);
-        try (var stream = Files.list(serverDir)) {
-            List<String> matches = stream
-                    .filter(Files::isRegularFile)
-                    .map(path -> path.getFileName().toString())
-                    .filter(name -> name.toLowerCase(Locale.ROOT).contains(lowerKeyword))
-                    .sorted()
-                    .collect(Collectors.toList());
-            if (matches.isEmpty()) {
-                return "DATA\n(no matches)";
+        Predicate<String> matcher = name -> name.toLowerCase(Locale.ROOT).contains(lowerKeyword);
+        if (!options.isEmpty()) {
+            return buildPage(options, fileIndex(), matcher, "(no matches)", pageBytes);
+        }
+        List<String> matches = fileIndex().stream()
+                .filter(matcher)
+                .collect(Collectors.toList());
+        if (matches.isEmpty()) {
+            return "DATA\n(no matches)";
+        }
+        return "DATA\n" + String.join("\n", matches);
+    }
+
+    // ============================
+    //   INDEKSI I RENDITUR + FAQET
+    // ============================
+
+    // emrat e nivelit te pare te server_files ne rend (direktoriumet me "/" ne fund); rindertohet vetem kur direktoriumi ndryshon jashte ketij handler-i
+    private NavigableSet<String> fileIndex() throws IOException {
+        long dirModified = Files.getLastModifiedTime(serverDir).toMillis();
+        if (dirModified != indexedDirModified) {
+            synchronized (names) {
+                if (dirModified != indexedDirModified) {
+                    try (var stream = Files.list(serverDir)) {
+                        Set<String> current = stream
+                                .filter(path -> Files.isRegularFile(path) || Files.isDirectory(path))
+                                .map(path -> path.getFileName() + (Files.isDirectory(path) ? "/" : ""))
+                                .collect(Collectors.toSet());
+                        names.retainAll(current);
+                        names.addAll(current);
+                    }
+                    indexedDirModified = dirModified;
+                }
+            }
+        }
+        return names;
+    }
+
+    // stampBeforeWrite: mtime i direktoriumit para shkrimit tone (indexStamp());
+    // kur ndryshon nga ai i indeksit, dikush tjeter e ka ndryshuar dhe indeksi rilexohet i tere
+    private void indexAdd(Path file, long stampBeforeWrite) throws IOException {
+        if (!refreshIfChangedBefore(stampBeforeWrite)) {
+            Path relative = serverDir.relativize(file);
+            names.add(relative.getNameCount() == 1 ? relative.toString() : relative.getName(0) + "/");
+            markIndexed();
+        }
+    }
+
+    private void indexRemove(Path file, long stampBeforeWrite) throws IOException {
+        if (!refreshIfChangedBefore(stampBeforeWrite)) {
+            if (file.getParent().equals(serverDir)) {
+                names.remove(file.getFileName().toString());
+            }
+            markIndexed();
+        }
+    }
+
+    private long indexStamp() {
+        try {
+            return Files.getLastModifiedTime(serverDir).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // true kur indeksi u rilexua (ndryshim i jashtem para shkrimit tone, ose indeksi ende i pandertuar)
+    private boolean refreshIfChangedBefore(long stampBeforeWrite) throws IOException {
+        synchronized (names) {
+            if (stampBeforeWrite != Long.MIN_VALUE && stampBeforeWrite == indexedDirModified) {
+                return false;
+            }
+            indexedDirModified = Long.MIN_VALUE;
+        }
+        fileIndex();
+        return true;
+    }
+
+    // ndryshimet tona e perditesojne indeksin direkt, pa rileximin e gjithe direktoriumit
+    private void markIndexed() {
+        try {
+            indexedDirModified = Files.getLastModifiedTime(serverDir).toMillis();
+        } catch (IOException e) {
+            indexedDirModified = Long.MIN_VALUE;
+        }
+    }
+
+    // DATA\n<rreshtat>\nnext=<cursor> ; faqja merret nga tailSet pas cursor-it, pra O(faqe) per /list
+    private String buildPage(Map<String, String> options, NavigableSet<String> index, Predicate<String> filter,
+                             String emptyText, int pageBytes) throws IOException {
+        int limit;
+        try {
+            limit = Integer.parseInt(options.getOrDefault("limit", String.valueOf(ServerConfig.PAGE_DEFAULT_LIMIT)));
+        } catch (NumberFormatException e) {
+            return "ERR Invalid limit";
+        }
+        limit = Math.max(1, Math.min(limit, ServerConfig.PAGE_MAX_LIMIT));
+        String after = null;
+        if (options.containsKey("cursor")) {
+            try {
+                after = new String(Base64.getUrlDecoder().decode(options.get("cursor")), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return "ERR Invalid cursor";
+            }
+        }
+        List<String> fields = List.of(options.getOrDefault("fields", "name").split(","));
+
+        NavigableSet<String> view = after == null ? index : index.tailSet(after, false);
+        StringBuilder sb = new StringBuilder("DATA\n");
+        String last = null;
+        int count = 0;
+        boolean more = false;
+        for (String name : view) {
+            if (!filter.test(name)) {
+                continue;
+            }
+            if (count >= limit) {
+                more = true;
+                break;
+            }
+            String line = formatEntry(name, fields);
+            if (line == null) {
+                continue; // u fshi ndermjet
+            }
+            if (sb.length() + line.length() > pageBytes) {
+                more = true;
+                break;
+            }
+            sb.append(line).append("\n");
+            last = name;
+            count++;
+        }
+        if (count == 0 && !more) {
+            sb.append(emptyText).append("\n");
+        }
+        if (more && last != null) {
+            sb.append("next=").append(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(last.getBytes(StandardCharsets.UTF_8)));
+        }
+        return sb.toString();
+    }
+
+    private String formatEntry(String name, List<String> fields) throws IOException {
+        if (fields.size() == 1 && fields.get(0).equals("name")) {
+            return name;
+        }
+        Path file = serverDir.resolve(name);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        for (String field : fields) {
+            if (line.length() > 0) {
+                line.append('\t');
+            }
+            switch (field.trim()) {
+                case "size" -> line.append(attrs.isDirectory() ? tree.usage(file).bytes() : attrs.size());
+                case "mtime" -> line.append(attrs.lastModifiedTime());
+                default -> line.append(name);
             }
-            return "DATA\n" + String.join("\n", matches);
         }
+        return line.toString();
+    }
+
+    // heq opsionet key=value (limit, cursor, fields) nga fundi i argumentit
+    private String extractOptions(String argument, Map<String, String> into) {
+        String remainder = argument.trim();
+        while (!remainder.isEmpty()) {
+            int space = remainder.lastIndexOf(' ');
+            String option = remainder.substring(space + 1);
+            int eq = option.indexOf('=');
+            if (eq <= 0 || !PAGE_OPTIONS.contains(option.substring(0, eq))) {
+                break;
+            }
+            into.put(option.substring(0, eq), option.substring(eq + 1));
+            remainder = space < 0 ? "" : remainder.substring(0, space).trim();
+        }
+        return remainder;
+    }
+
+    // /signature filename [start=<bllok>] -> nenshkrimet e blloqeve per delta upload;
+    // faqe qe hyjne ne datagramin e sesionit, me next=<bllok> kur ka te tjera
+    private String handleSignature(String cmd, int pageBytes) throws IOException {
+        String argument = extractSingleArgument(cmd, ServerConfig.CMD_SIGNATURE);
+        if (argument == null) {
+            return "ERR Usage: " + ServerConfig.CMD_SIGNATURE + " <filename> [start=<block>]";
+        }
+        int startBlock = 0;
+        int space = argument.lastIndexOf(' ');
+        if (space > 0 && argument.startsWith("start=", space + 1)) {
+            try {
+                startBlock = Integer.parseInt(argument.substring(space + 1 + "start=".length()));
+            } catch (NumberFormatException e) {
+                return "ERR Invalid start block";
+            }
+            argument = unquote(argument.substring(0, space).trim());
+        }
+        if (startBlock < 0) {
+            return "ERR Invalid start block";
+        }
+
+        Path file = resolveWithin(serverDir, argument);
+        if (!Files.isRegularFile(file)) {
+            return "ERR File not found";
+        }
+
+        byte[] bytes = blobStore.read(file, () -> Files.readAllBytes(file));
+        String fileName = escapeHeaderValue(file.getFileName().toString());
+        int blockSize = ServerConfig.DELTA_BLOCK_SIZE;
+        DeltaSync.Signature whole = new DeltaSync.Signature(blockSize, bytes.length, List.of());
+        int maxBlocks = DeltaSync.blocksPerPage(pageBytes,
+                DeltaSync.signatureHeader(fileName, whole).getBytes(StandardCharsets.UTF_8).length);
+        DeltaSync.Signature page = DeltaSync.signature(bytes, blockSize, startBlock, maxBlocks);
+        long nextBlock = (long) startBlock + page.blocks().size();
+        boolean more = nextBlock * blockSize < bytes.length;
+        return DeltaSync.formatSignature(fileName, page, more ? (int) nextBlock : -1);
     }
 
     // ============================
@@ -185,7 +560,13 @@ public class FileCommandHandler {
             return "ERR File not found";
         }
 
-        Files.delete(file);
+        long size = Files.size(file);
+        long indexStamp = indexStamp();
+        blobStore.delete(file);
+        tree.applyChange(file, size, -1);
+        catalog.remove(file);
+        indexRemove(file, indexStamp);
+        notifyMutation(file, true);
         return "OK File deleted";
     }
 
@@ -206,34 +587,304 @@ public class FileCommandHandler {
             return "ERR Invalid upload payload (expected Base64)";
         }
 
-        Files.write(serverFile, decoded);
-        Path uploadedCopy = resolveWithin(uploadDir, serverFile.getFileName().toString());
-        Files.write(uploadedCopy, decoded);
+        storeUpload(serverFile, decoded);
 
-        return "OK Uploaded " + serverFile.getFileName() + " (" + decoded.length + " bytes)";
+        return "OK Uploaded " + serverFile.getFileName() + " (" + decoded.length + " bytes, crc32c="
+                + catalog.get(serverFile).crcHex() + ")";
     }
 
+    // /patch filename <base64 delta> -> rindërton file-in nga blloqet ekzistuese + literalet
+    private String handlePatch(String cmd) throws IOException {
+        UploadPayload payload = parsePayloadCommand(cmd, ServerConfig.CMD_PATCH);
+        if (payload == null) {
+            return "ERR Usage: " + ServerConfig.CMD_PATCH + " <filename> <delta>";
+        }
+        Path serverFile = resolveWithin(serverDir, payload.fileName());
+        if (!Files.isRegularFile(serverFile)) {
+            return "ERR File not found";
+        }
+        byte[] delta;
+        try {
+            delta = Base64.getDecoder().decode(payload.base64());
+        } catch (IllegalArgumentException e) {
+            return "ERR Invalid patch payload (expected Base64)";
+        }
+
+        DeltaSync.PatchResult result;
+        try {
+            byte[] base = blobStore.read(serverFile, () -> Files.readAllBytes(serverFile));
+            result = DeltaSync.applyDelta(base, ServerConfig.DELTA_BLOCK_SIZE, delta);
+        } catch (IOException e) {
+            return "ERR Patch rejected: " + e.getMessage();
+        }
+        storeUpload(serverFile, result.data());
 
+        return "OK Patched " + serverFile.getFileName() + " (" + result.data().length + " bytes, "
+                + result.copiedBlocks() + " blocks reused, " + result.literalBytes() + " literal bytes)";
+    }
 
+    // permbajtja shkruhet nje here ne blob store (fsync + rename atomik) dhe pergjigjja kthehet
+    // sapo kopja primare ne server_files eshte e qendrueshme; uploads e referencon me vone
+    private void storeUpload(Path serverFile, byte[] data) throws IOException {
+        long previousSize = Files.isRegularFile(serverFile) ? Files.size(serverFile) : -1;
+        long indexStamp = indexStamp();
+        String hash = blobStore.put(serverFile, data);
+        tree.applyChange(serverFile, previousSize, data.length);
+        catalog.put(serverFile, data);
+        indexAdd(serverFile, indexStamp);
+        Path uploadedCopy = resolveWithin(uploadDir, tree.relativeName(serverFile));
+        mirrorWriter.execute(() -> {
+            try {
+                // blob-i mund te jete fshire nderkohe bashke me file-in; atehere s'ka çfare te pasqyrohet
+                blobStore.linkExisting(uploadedCopy, hash);
+            } catch (IOException e) {
+                System.err.println("Failed to mirror " + uploadedCopy + ": " + e.getMessage());
+            }
+        });
+        notifyMutation(serverFile, false);
+    }
 
-    private String handleDownload(String cmd) throws IOException {
-        String fileName = extractSingleArgument(cmd, ServerConfig.CMD_DOWNLOAD);
-        if (fileName == null) {
-            return "ERR Usage: /download <filename>";
+    private void notifyMutation(Path file, boolean deleted) {
+        MutationListener listener = mutationListener;
+        if (listener != null && replicating.get() == null) {
+            listener.onMutation(tree.relativeName(file), file, deleted);
+        }
+    }
+
+
+
+
+    // /download filename [offset=<n>] [length=<n>] [verify=<sha256 e prefiksit>]
+    private String handleDownload(String cmd, int datagramBytes) throws IOException {
+        String argument = extractSingleArgument(cmd, ServerConfig.CMD_DOWNLOAD);
+        if (argument == null) {
+            return "ERR Usage: /download <filename> [offset=<n>] [length=<n>] [verify=<sha256>]";
+        }
+        RangeRequest range = parseRange(argument, datagramBytes);
+        if (range == null) {
+            return "ERR Invalid range";
         }
 
-        Path file = resolveWithin(serverDir, fileName);
+        Path file = resolveWithin(serverDir, range.fileName());
         if (!Files.isRegularFile(file)) {
             return "ERR File not found";
         }
-        byte[] bytes = Files.readAllBytes(file);
-        Path copy = resolveWithin(downloadDir, file.getFileName().toString());
-        Files.write(copy, bytes);
+        if (range.ranged()) {
+            String response = buildRangeResponse(file, range);
+            // kopja ne downloads krijohet kur dergohet pjesa e fundit e file-it
+            if (response.startsWith("DATA_RANGE") && range.offset() + range.length() >= Files.size(file)) {
+                linkDownloadCopy(file, null);
+            }
+            return response;
+        }
+        byte[] bytes = blobStore.read(file, () -> Files.readAllBytes(file));
+        linkDownloadCopy(file, bytes);
         String payload = Base64.getEncoder().encodeToString(bytes);
 
         return buildBase64Response(file, bytes, payload);
     }
 
+    private void linkDownloadCopy(Path file, byte[] bytes) throws IOException {
+        Path copy = resolveWithin(downloadDir, tree.relativeName(file));
+        String hash = blobStore.hashOf(file);
+        if (hash == null || !blobStore.linkExisting(copy, hash)) {
+            blobStore.put(copy, bytes != null ? bytes : blobStore.read(file, () -> Files.readAllBytes(file)));
+        }
+    }
+
+    // /download <file> offset=<n> fec=<k> -> k pjese te dhenash + 1 paritet XOR, secila datagram me vete
+    public List<String> handleFecDownload(String commandLine, String role, int datagramBytes) {
+        ServerEvents.CommandEvent event = new ServerEvents.CommandEvent();
+        event.begin();
+        List<String> datagrams = buildFecGroup(commandLine, role, datagramBytes);
+        ServerEvents.commitCommand(event, commandLine.trim(), datagrams);
+        return datagrams;
+    }
+
+    private List<String> buildFecGroup(String commandLine, String role, int datagramBytes) {
+        if (!"admin".equalsIgnoreCase(role)) {
+            return List.of("ERR Permission denied (admin only)");
+        }
+        try {
+            String argument = extractSingleArgument(commandLine.trim(), ServerConfig.CMD_DOWNLOAD);
+            RangeRequest range = argument == null ? null : parseRange(argument, datagramBytes);
+            if (range == null || range.fecGroup() <= 0) {
+                return List.of("ERR Usage: /download <filename> offset=<n> fec=<k>");
+            }
+            Path file = resolveWithin(serverDir, range.fileName());
+            if (!Files.isRegularFile(file)) {
+                return List.of("ERR File not found");
+            }
+            // çdo pjese (me koken dhe base64) duhet te hyje ne datagramin e negociuar, pa fragmentim; me te njejtin
+            // kufi si /download offset= length=, qe pjesa e humbur te merret e plote me nje kerkese range
+            int shardSize = Math.min(ServerConfig.RANGE_CHUNK_SIZE, maxRangeLength(range.fileName(), datagramBytes));
+            FecRead group = blobStore.read(file, () -> readFecShards(file, range, shardSize));
+            if (group == null) {
+                return List.of(buildRangeResponse(file, range)); // fundi i file-it ose offset i gabuar
+            }
+            long total = group.total();
+            int count = group.shards().length;
+            byte[][] shards = group.shards();
+            if (range.offset() + (long) count * shardSize >= total) {
+                linkDownloadCopy(file, null);
+            }
+            return FecCodec.encodeGroup(range.offset(), shards, shardSize, total, catalog.get(file).crcHex());
+        } catch (SecurityException e) {
+            return List.of("ERR " + e.getMessage());
+        } catch (Exception e) {
+            return List.of("ERR " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private record FecRead(long total, byte[][] shards) {
+    }
+
+    // null kur nga offset-i s'ka asnje pjese per te derguar
+    private FecRead readFecShards(Path file, RangeRequest range, int shardSize) throws IOException {
+        long total = Files.size(file);
+        int count = (int) Math.min(Math.min(range.fecGroup(), ServerConfig.FEC_MAX_GROUP),
+                (total - range.offset() + shardSize - 1) / shardSize);
+        if (count <= 0) {
+            return null;
+        }
+        byte[][] shards = new byte[count][];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer buffer = ByteBuffer.allocate(FecCodec.shardLength(range.offset(), i, shardSize, total));
+                long position = range.offset() + (long) i * shardSize;
+                int read;
+                while (buffer.hasRemaining() && (read = channel.read(buffer, position)) >= 0) {
+                    position += read;
+                }
+                shards[i] = buffer.array();
+            }
+        }
+        return new FecRead(total, shards);
+    }
+
+    // ============================
+    //   RANGE READS
+    // ============================
+
+    // DATA_RANGE\nfilename=..\noffset=..\nlength=..\ntotal=..\n<base64>
+    private String buildRangeResponse(Path file, RangeRequest range) throws IOException {
+        // madhesia, prefiksi dhe pjesa lexohen nga i njejti version i file-it
+        return blobStore.read(file, () -> readRange(file, range));
+    }
+
+    private String readRange(Path file, RangeRequest range) throws IOException {
+        long total = Files.size(file);
+        if (range.offset() > total) {
+            return "ERR Offset beyond end of file (" + total + " bytes)";
+        }
+        if (range.verify() != null && !range.verify().equalsIgnoreCase(prefixHash(file, range.offset()))) {
+            return "ERR Prefix mismatch";
+        }
+        int length = (int) Math.min(range.length(), total - range.offset());
+        byte[] chunk = new byte[length];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            long position = range.offset();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+            }
+        }
+        String safeName = escapeHeaderValue(file.getFileName().toString());
+        // crc32c i pjeses dhe i gjithe file-it (nga katalogu) qe klienti t'i verifikoje te dyja
+        FileCatalog.Entry entry = catalog.get(file);
+        return "DATA_RANGE crc32c=" + String.format("%08x", FileCatalog.crc32c(chunk)) + " file-crc32c=" + entry.crcHex()
+                + "\nfilename=" + safeName + "\noffset=" + range.offset() + "\nlength=" + length
+                + "\ntotal=" + total + "\n" + Base64.getEncoder().encodeToString(chunk);
+    }
+
+    // SHA-256 e bajteve [0, length) pa e lexuar file-in e tere ne memorie
+    private String prefixHash(Path file, long length) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return sha256Prefix(in, length);
+        }
+    }
+
+    public static String sha256Prefix(InputStream in, long length) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                break;
+            }
+            digest.update(buffer, 0, read);
+            remaining -= read;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // heq opsionet offset=/length=/verify= nga fundi i argumentit;
+    // length kufizohet qe pergjigjja DATA_RANGE te hyje ne datagramin e sesionit
+    private RangeRequest parseRange(String argument, int datagramBytes) {
+        String remainder = argument.trim();
+        long offset = 0;
+        long length = -1;
+        String verify = null;
+        String ifVersion = null;
+        int fecGroup = 0;
+        boolean ranged = false;
+        while (true) {
+            int space = remainder.lastIndexOf(' ');
+            if (space < 0) {
+                break;
+            }
+            String option = remainder.substring(space + 1);
+            try {
+                if (option.startsWith("offset=")) {
+                    offset = Long.parseLong(option.substring("offset=".length()));
+                } else if (option.startsWith("length=")) {
+                    length = Long.parseLong(option.substring("length=".length()));
+                } else if (option.startsWith("verify=")) {
+                    verify = option.substring("verify=".length());
+                } else if (option.startsWith("if-version=")) {
+                    ifVersion = option.substring("if-version=".length());
+                    remainder = remainder.substring(0, space).trim();
+                    continue;
+                } else if (option.startsWith("fec=")) {
+                    fecGroup = Integer.parseInt(option.substring("fec=".length()));
+                    remainder = remainder.substring(0, space).trim();
+                    continue;
+                } else {
+                    break;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            ranged = true;
+            remainder = remainder.substring(0, space).trim();
+        }
+        if (offset < 0 || length == 0 || length < -1) {
+            return null;
+        }
+        String fileName = unquote(remainder);
+        int maxLength = maxRangeLength(fileName, datagramBytes);
+        if (length == -1 || length > maxLength) {
+            length = maxLength;
+        }
+        return new RangeRequest(fileName, offset, length, verify, ifVersion, fecGroup, ranged);
+    }
+
+    // pjesa me e madhe qe, me emrin e file-it ne koke, hyn ne nje datagram te sesionit
+    private int maxRangeLength(String fileName, int datagramBytes) {
+        return Math.min(ServerConfig.MAX_RANGE_LENGTH, ServerConfig.payloadForDatagram(datagramBytes,
+                escapeHeaderValue(fileName).getBytes(StandardCharsets.UTF_8).length));
+    }
+
     // ============================
     //   HELPER METHODS
     // ============================
@@ -255,11 +906,14 @@ public class FileCommandHandler {
         return unquote(remainder);
     }
     private UploadPayload parseUpload(String cmd) {
+        return parsePayloadCommand(cmd, ServerConfig.CMD_UPLOAD);
+    }
+    private UploadPayload parsePayloadCommand(String cmd, String keyword) {
         String trimmed = cmd.trim();
-        if (!trimmed.startsWith(ServerConfig.CMD_UPLOAD)) {
+        if (!trimmed.startsWith(keyword)) {
             return null;
         }
-        int cursor = ServerConfig.CMD_UPLOAD.length();
+        int cursor = keyword.length();
         cursor = skipWhitespace(trimmed, cursor);
         if (cursor >= trimmed.length()) {
             return null;
@@ -321,21 +975,10 @@ public class FileCommandHandler {
         Files.createDirectories(dir);
         return dir;
     }
-    private boolean isProbablyText(byte[] data) {
-        for (byte b : data) {
-            int value = b & 0xFF;
-            if (value == 0) {
-                return false;
-            }
-            if (value < 0x08) {
-                return false;
-            }
-        }
-        return true;
-    }
     private String buildBase64Response(Path file, byte[] bytes, String payload) {
         String safeName = escapeHeaderValue(file.getFileName().toString());
-        return "DATA_BASE64\nfilename=" + safeName + "\nsize=" + bytes.length + "\n" + payload;
+        return "DATA_BASE64 crc32c=" + String.format("%08x", FileCatalog.crc32c(bytes)) + "\nfilename=" + safeName
+                + "\nsize=" + bytes.length + "\n" + payload;
     }
     private String escapeHeaderValue(String value) {
         return value.replace('\n', '_').replace('\r', '_');
@@ -344,5 +987,8 @@ public class FileCommandHandler {
     }
     private record ParseResult(String token, int nextIndex) {
     }
+    private record RangeRequest(String fileName, long offset, long length, String verify, String ifVersion,
+                                int fecGroup, boolean ranged) {
+    }
 
 }
@@ -0,0 +1,201 @@
+package server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /watch: shtyn ngjarjet CREATE/MODIFY/DELETE te server_files te klientet e abonuar,
+ * ne vend qe ata te bejne polling me /list dhe /info.
+ * Ngjarjet per te njejtin file bashkohen dhe dergohen ne nje datagram per interval.
+ */
+public class FileWatcher {
+
+    // sesioni i abonentit udheton me ngjarjen, pa kerkim ne map-in e sesioneve
+    @FunctionalInterface
+    public interface Sender {
+        void send(String message, SocketAddress address, ClientSession session);
+    }
+
+    private final Path dir;
+    private final Sender sender;
+    private final Map<SocketAddress, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    public FileWatcher(Path dir, Sender sender) {
+        this.dir = dir;
+        this.sender = sender;
+    }
+
+    public void start() {
+        running = true;
+        Thread watcher = new Thread(this::watchLoop, "file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        Thread flusher = new Thread(this::flushLoop, "file-watcher-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public void subscribe(ClientSession session) {
+        subscribers.computeIfAbsent(session.getAddress(), address -> new Subscriber(address, session));
+    }
+
+    public boolean unsubscribe(SocketAddress address) {
+        return subscribers.remove(address) != null;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // ================== LEXIMI I NGJARJEVE ==================
+    private void watchLoop() {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            dir.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            while (running) {
+                WatchKey key = service.poll(1, TimeUnit.SECONDS);
+                if (key == null) {
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        subscribers.values().forEach(Subscriber::markOverflow);
+                        continue;
+                    }
+                    String name = event.context().toString();
+                    String kind = toKind(event.kind());
+                    if (!subscribers.isEmpty()) {
+                        subscribers.values().forEach(s -> s.offer(name, kind));
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Watch on " + dir + " is no longer valid.");
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("File watcher failed: " + e.getMessage());
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ================== DERGIMI NE GRUPE ==================
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(ServerConfig.WATCH_FLUSH_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (Subscriber subscriber : subscribers.values()) {
+                String batch = subscriber.drain();
+                if (batch != null) {
+                    sender.send(batch, subscriber.address, subscriber.session);
+                }
+            }
+        }
+    }
+
+    private static String toKind(WatchEvent.Kind<?> kind) {
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            return "CREATE";
+        }
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            return "DELETE";
+        }
+        return "MODIFY";
+    }
+
+    private static final class Subscriber {
+        private final SocketAddress address;
+        private final ClientSession session;
+        private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+        private boolean overflow;
+
+        private Subscriber(SocketAddress address, ClientSession session) {
+            this.address = address;
+            this.session = session;
+        }
+
+        private synchronized void offer(String name, String kind) {
+            if (overflow) {
+                return;
+            }
+            String merged = coalesce(pending.get(name), kind);
+            if (merged == null) {
+                pending.remove(name);
+                return;
+            }
+            pending.put(name, merged);
+            // backpressure: nese klienti s'mund t'i ndjeke, i thuhet te beje /list nje here
+            if (pending.size() > ServerConfig.WATCH_MAX_PENDING) {
+                markOverflow();
+            }
+        }
+
+        private synchronized void markOverflow() {
+            overflow = true;
+            pending.clear();
+        }
+
+        // EVENT\n<KIND> <name>\n...  ose  EVENT\nOVERFLOW
+        private synchronized String drain() {
+            if (overflow) {
+                overflow = false;
+                return "EVENT\nOVERFLOW (rifresko me " + ServerConfig.CMD_LIST + ")";
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder("EVENT");
+            int bytes = sb.length();
+            Iterator<Map.Entry<String, String>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, String> entry = it.next();
+                String line = "\n" + entry.getValue() + " " + entry.getKey();
+                if (bytes + line.length() > ServerConfig.BUFFER_SIZE) {
+                    break; // pjesa tjeter dergohet ne intervalin e ardhshem
+                }
+                sb.append(line);
+                bytes += line.length();
+                it.remove();
+            }
+            return sb.toString();
+        }
+
+        private static String coalesce(String previous, String next) {
+            if (previous == null) {
+                return next;
+            }
+            if (previous.equals("CREATE")) {
+                return next.equals("DELETE") ? null : "CREATE";
+            }
+            if (previous.equals("DELETE") && next.equals("CREATE")) {
+                return "MODIFY";
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log i mesazheve me rotacion: segmenti aktiv eshte logs/messages_<port>.log; kur kalon madhesine ose moshen
+ * maksimale riemerohet dhe kompresohet ne sfond si messages_<port>-<start>.log.gz.
+ * Segmentet i perkasin vetem file-it aktiv me te njejtin emer baze, ndaj disa nyje mund te ndajne logs/.
+ * File-i .gz ndertohet nga blloqe gzip te pavarura, dhe indeksi (.idx) ruan per çdo bllok offset-in,
+ * intervalin kohor dhe klientet, qe nje kerkese te dekompresoje vetem blloqet qe i duhen.
+ */
+public class MessageLog {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_RESPONSE_BYTES = 7_000;
+
+    private final Path dir;
+    private final Path activeFile;
+    private final String segmentPrefix;   // "<emri i file-it aktiv pa .log>-"
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "message-log-compressor");
+        t.setDaemon(true);
+        return t;
+    });
+    private BufferedWriter writer;
+    private long activeSize;
+    private long activeStart;
+
+    public MessageLog(Path activeFile) throws IOException {
+        this.activeFile = activeFile.toAbsolutePath().normalize();
+        this.dir = this.activeFile.getParent();
+        this.segmentPrefix = this.activeFile.getFileName().toString().replaceFirst("\\.log$", "") + "-";
+        Files.createDirectories(dir);
+        openActive();
+        // segmentet e mbyllura qe s'u kompresuan para nje ndalimi
+        try (var stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().startsWith(segmentPrefix)
+                            && p.getFileName().toString().endsWith(".log"))
+                    .forEach(p -> compressor.submit(() -> compressSegment(p)));
+        }
+    }
+
+    // ================== SHKRIMI ==================
+    public synchronized void append(String clientId, String address, String message) {
+        long now = System.currentTimeMillis();
+        String line = Instant.ofEpochMilli(now) + " [" + clientId + "@" + address + "]: "
+                + message.replace('\n', ' ').replace('\r', ' ');
+        try {
+            if (activeSize >= ServerConfig.MSG_LOG_MAX_BYTES || now - activeStart >= ServerConfig.MSG_LOG_MAX_AGE_MS) {
+                rotate();
+            }
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+            activeSize += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        } catch (IOException e) {
+            System.err.println("Failed to log message: " + e.getMessage());
+        }
+    }
+
+    private void openActive() throws IOException {
+        writer = Files.newBufferedWriter(activeFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        activeSize = Files.size(activeFile);
+        activeStart = activeSize > 0 ? Files.getLastModifiedTime(activeFile).toMillis() : System.currentTimeMillis();
+        if (activeSize > 0) {
+            activeStart = Math.min(activeStart, firstTimestamp(activeFile, activeStart));
+        }
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        Path closed = dir.resolve(segmentPrefix + activeStart + ".log");
+        Files.move(activeFile, closed);
+        openActive();
+        compressor.submit(() -> compressSegment(closed));
+    }
+
+    // ================== KOMPRESIMI ==================
+    private void compressSegment(Path plain) {
+        String base = plain.getFileName().toString().replace(".log", "");
+        Path gz = dir.resolve(base + ".log.gz");
+        Path idx = dir.resolve(base + ".idx");
+        Path idxTemp = dir.resolve(base + ".idx.tmp");
+        try (BufferedReader reader = Files.newBufferedReader(plain, StandardCharsets.UTF_8);
+             RandomAccessFile out = new RandomAccessFile(gz.toFile(), "rw");
+             BufferedWriter index = Files.newBufferedWriter(idxTemp, StandardCharsets.UTF_8)) {
+            out.setLength(0);
+            Block block = new Block();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                block.add(line);
+                if (block.bytes.size() >= BLOCK_SIZE) {
+                    writeBlock(block, out, index);
+                    block = new Block();
+                }
+            }
+            writeBlock(block, out, index);
+        } catch (IOException e) {
+            System.err.println("Failed to compress " + plain + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(idxTemp, idx, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(plain);
+        } catch (IOException e) {
+            System.err.println("Failed to finish " + plain + ": " + e.getMessage());
+        }
+    }
+
+    // indeksi: <offset> <gjatesia> <ts i pare> <ts i fundit> <klient1,klient2,...>
+    private void writeBlock(Block block, RandomAccessFile out, BufferedWriter index) throws IOException {
+        if (block.bytes.size() == 0) {
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+            block.bytes.writeTo(gzip);
+        }
+        long offset = out.length();
+        out.seek(offset);
+        out.write(compressed.toByteArray());
+        index.write(offset + " " + compressed.size() + " " + block.first + " " + block.last + " "
+                + String.join(",", block.clients));
+        index.newLine();
+    }
+
+    private static final class Block {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Set<String> clients = new HashSet<>();
+        private long first = Long.MAX_VALUE;
+        private long last = Long.MIN_VALUE;
+
+        private void add(String line) {
+            byte[] data = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            bytes.write(data, 0, data.length);
+            long ts = parseTimestamp(line);
+            if (ts >= 0) {
+                first = Math.min(first, ts);
+                last = Math.max(last, ts);
+            }
+            String client = parseClient(line);
+            if (client != null) {
+                clients.add(client.replace(',', '_'));
+            }
+        }
+    }
+
+    // ================== KERKIMI ==================
+    // mesazhet e nje klienti ne [from, to], nga segmentet e kompresuara dhe segmenti aktiv
+    public String query(String clientId, long from, long to) throws IOException {
+        List<String> matches = new ArrayList<>();
+        List<Path> indexes;
+        try (var stream = Files.list(dir)) {
+            indexes = stream.filter(p -> p.getFileName().toString().startsWith(segmentPrefix)
+                            && p.getFileName().toString().endsWith(".idx"))
+                    .sorted()
+                    .toList();
+        }
+        int scannedBlocks = 0;
+        for (Path idx : indexes) {
+            Path gz = dir.resolve(idx.getFileName().toString().replace(".idx", ".log.gz"));
+            for (String entry : Files.readAllLines(idx, StandardCharsets.UTF_8)) {
+                String[] parts = entry.split(" ", 5);
+                if (parts.length < 5) {
+                    continue;
+                }
+                long first = Long.parseLong(parts[2]);
+                long last = Long.parseLong(parts[3]);
+                if (last < from || first > to || !Arrays.asList(parts[4].split(",")).contains(clientId)) {
+                    continue;
+                }
+                scannedBlocks++;
+                byte[] compressed = new byte[Integer.parseInt(parts[1])];
+                try (RandomAccessFile in = new RandomAccessFile(gz.toFile(), "r")) {
+                    in.seek(Long.parseLong(parts[0]));
+                    in.readFully(compressed);
+                }
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8))) {
+                    collect(reader, clientId, from, to, matches);
+                }
+            }
+        }
+        synchronized (this) {
+            writer.flush();
+            try (BufferedReader reader = Files.newBufferedReader(activeFile, StandardCharsets.UTF_8)) {
+                collect(reader, clientId, from, to, matches);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("DATA\n");
+        sb.append(matches.size()).append(" message(s) for ").append(clientId)
+                .append(" (").append(scannedBlocks).append(" archived block(s) read)\n");
+        int shown = 0;
+        for (String match : matches) {
+            if (sb.length() + match.length() + 1 > MAX_RESPONSE_BYTES) {
+                sb.append("... ").append(matches.size() - shown).append(" more (ngushto dritaren kohore)\n");
+                break;
+            }
+            sb.append(match).append("\n");
+            shown++;
+        }
+        return sb.toString();
+    }
+
+    private static void collect(BufferedReader reader, String clientId, long from, long to, List<String> into)
+            throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            long ts = parseTimestamp(line);
+            if (ts >= from && ts <= to && clientId.equals(parseClient(line))) {
+                into.add(line);
+            }
+        }
+    }
+
+    private static long firstTimestamp(Path file, long fallback) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            long ts = line != null ? parseTimestamp(line) : -1;
+            return ts >= 0 ? ts : fallback;
+        } catch (IOException e) {
+            return fallback;
+        }
+    }
+
+    private static long parseTimestamp(String line) {
+        int space = line.indexOf(' ');
+        if (space <= 0) {
+            return -1;
+        }
+        try {
+            return Instant.parse(line.substring(0, space)).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static String parseClient(String line) {
+        int open = line.indexOf(" [");
+        int at = open < 0 ? -1 : line.indexOf('@', open);
+        if (open < 0 || at < 0) {
+            return null;
+        }
+        return line.substring(open + 2, at);
+    }
+}
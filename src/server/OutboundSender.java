@@ -0,0 +1,145 @@
+package server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread i vetem qe shkruan te gjithe datagramet dalese ne DatagramChannel.
+ * Workerat dhe pacer-i vetem i vendosin ne rradhe, pa u grindur per lock-un e socket-it; sender-i i merr
+ * ne grupe (drainTo), i kopjon ne nje ByteBuffer direkt te riperdorur dhe numeruesit i perditeson
+ * njehere per grup. Sesioni vjen bashke me datagramin, pa kerkim ne map-in e sesioneve.
+ */
+public class OutboundSender {
+
+    private record Outgoing(byte[] data, SocketAddress address, ClientSession session) {
+    }
+
+    private final DatagramChannel channel;
+    private final TraficMonitor trafficMonitor;
+    private final BlockingQueue<Outgoing> queue = new ArrayBlockingQueue<>(ServerConfig.SENDER_QUEUE_CAPACITY);
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(65_535);
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong pushWaits = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public OutboundSender(DatagramChannel channel, TraficMonitor trafficMonitor) {
+        this.channel = channel;
+        this.trafficMonitor = trafficMonitor;
+    }
+
+    public void start() {
+        thread = new Thread(this::senderLoop, "udp-sender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // dergon ate qe ka mbetur ne rradhe para mbylljes se channel-it
+    public void shutdown() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(ServerConfig.SENDER_WAIT_MS * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ================== RRADHA ==================
+    // rradha e plote eshte presion prapa: workeri pret pak, pastaj datagrami hidhet (klienti e ritransmeton)
+    public void submit(byte[] data, SocketAddress address, ClientSession session) {
+        try {
+            if (!queue.offer(new Outgoing(data, address, session), ServerConfig.SENDER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                dropped.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+        }
+    }
+
+    // EVENT / REPL / REPL_ACK: pa ritransmetim nga klienti, prandaj pritet sa te kete vend (hidhet vetem ne mbyllje)
+    public void submitPush(byte[] data, SocketAddress address, ClientSession session) {
+        Outgoing out = new Outgoing(data, address, session);
+        try {
+            while (!queue.offer(out, ServerConfig.SENDER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                pushWaits.incrementAndGet();
+                if (!running) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void senderLoop() {
+        List<Outgoing> batch = new ArrayList<>(ServerConfig.SENDER_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                Outgoing first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+            }
+            queue.drainTo(batch, ServerConfig.SENDER_BATCH - batch.size());
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Outgoing> batch) {
+        long bytes = 0;
+        int packets = 0;
+        for (Outgoing out : batch) {
+            if (out.data().length > buffer.capacity()) {
+                failed.incrementAndGet(); // me i madh se nje datagram UDP
+                continue;
+            }
+            buffer.clear();
+            buffer.put(out.data()).flip();
+            try {
+                channel.send(buffer, out.address());
+            } catch (IOException e) {
+                failed.incrementAndGet();
+                System.err.println("Error sending response to " + out.address() + ": " + e.getMessage());
+                continue;
+            }
+            bytes += out.data().length;
+            packets++;
+            if (out.session() != null) {
+                out.session().addBytesSent(out.data().length);
+            }
+        }
+        trafficMonitor.addBatchSent(bytes, packets);
+        sent.addAndGet(packets);
+        batches.incrementAndGet();
+    }
+
+    public String buildStats() {
+        long batchCount = batches.get();
+        return String.format("Sender: %d sent in %d batches (%.1f per batch), %d queued, %d dropped, %d push waits, %d failed%n",
+                sent.get(), batchCount, batchCount == 0 ? 0.0 : (double) sent.get() / batchCount,
+                queue.size(), dropped.get(), pushWaits.get(), failed.get());
+    }
+}
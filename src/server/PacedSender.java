@@ -0,0 +1,240 @@
+package server;
+
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dergim me ritem (pacing) per çdo destinacion, me dritare kongjestioni AIMD.
+ * Protokolli nuk ka ACK te veçanta: kerkesa e radhes nga i njejti klient konfirmon pergjigjet
+ * e meparshme (rritje aditive), ndersa e njejta kerkese e perseritur brenda afatit te ritransmetimit
+ * eshte sinjal humbjeje (pergjysmim i dritares).
+ * Dritarja percakton shpejtesine (cwnd datagrame per srtt). Datagramet pa token presin ne rradhen
+ * e destinacionit dhe i dergon nje thread i vetem, nje datagram per destinacion ne çdo rrotullim,
+ * qe nje transferim i madh te mos i lere pa radhe klientet e tjere.
+ * Vetem destinacionet me sesion kane gjendje pacing; pergjigjet pa sesion (SERVER BUSY, nyjet e klasterit)
+ * dergohen direkt, qe adresat e panjohura ose te falsifikuara te mos e rrisin map-in e flow-ve.
+ */
+public class PacedSender {
+
+    @FunctionalInterface
+    public interface Transport {
+        void send(byte[] data, SocketAddress address, ClientSession session);
+    }
+
+    // sesioni udheton me datagramin qe numeruesit te perditesohen pa kerkim ne map
+    private record Datagram(byte[] data, ClientSession session) {
+    }
+
+    private static final long IDLE_WAIT_NANOS = 50_000_000L;
+
+    private final Transport transport;
+    private final Map<SocketAddress, Flow> flows = new ConcurrentHashMap<>();
+    private final Object signal = new Object();
+    private final AtomicLong pacedDatagrams = new AtomicLong();
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+    private final AtomicLong unpacedDatagrams = new AtomicLong();
+    private volatile boolean running = true;
+
+    public PacedSender(Transport transport) {
+        this.transport = transport;
+    }
+
+    public void start() {
+        Thread t = new Thread(this::pacerLoop, "paced-sender");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void shutdown() {
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    // ================== DERGIMI ==================
+    // dergohet menjehere kur ka token dhe rradha eshte bosh; perndryshe pret radhen e pacer-it
+    public void send(byte[] data, SocketAddress address, ClientSession session) {
+        if (session == null) {
+            unpacedDatagrams.incrementAndGet();
+            transport.send(data, address, null);
+            return;
+        }
+        Flow flow = flows.computeIfAbsent(address, Flow::new);
+        boolean sendNow;
+        synchronized (flow) {
+            long now = System.nanoTime();
+            flow.refill(now);
+            sendNow = flow.queue.isEmpty() && flow.tokens >= 1;
+            if (sendNow) {
+                flow.consume(now);
+            } else if (flow.queue.size() >= ServerConfig.PACING_MAX_QUEUE) {
+                // rradha e plote: datagrami hidhet dhe numerohet; klienti e ritransmeton kerkesen
+                droppedDatagrams.incrementAndGet();
+                flow.dropped++;
+                return;
+            } else {
+                flow.queue.addLast(new Datagram(data, session));
+            }
+        }
+        if (sendNow) {
+            transport.send(data, address, session);
+        } else {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    private void pacerLoop() {
+        while (running) {
+            long waitNanos = IDLE_WAIT_NANOS;
+            boolean sent = false;
+            for (Flow flow : flows.values()) {
+                Datagram next = null;
+                synchronized (flow) {
+                    if (flow.queue.isEmpty()) {
+                        continue;
+                    }
+                    long now = System.nanoTime();
+                    flow.refill(now);
+                    if (flow.tokens >= 1) {
+                        flow.consume(now);
+                        next = flow.queue.pollFirst();
+                    }
+                    if (!flow.queue.isEmpty()) {
+                        waitNanos = Math.min(waitNanos, flow.nanosUntilToken());
+                    }
+                }
+                if (next != null) {
+                    transport.send(next.data(), flow.address, next.session());
+                    pacedDatagrams.incrementAndGet();
+                    sent = true;
+                }
+            }
+            if (sent) {
+                continue;
+            }
+            synchronized (signal) {
+                try {
+                    signal.wait(Math.max(1, waitNanos / 1_000_000L), (int) (waitNanos % 1_000_000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // ================== SINJALET ACK / HUMBJE ==================
+    // thirret per çdo datagram te marre nga address, para perpunimit
+    public void onReceive(SocketAddress address, String message) {
+        Flow flow = flows.get(address);
+        if (flow == null) {
+            return;
+        }
+        synchronized (flow) {
+            long now = System.nanoTime();
+            int hash = message.hashCode();
+            boolean repeated = hash == flow.lastRequestHash
+                    && now - flow.lastRequestNanos < ServerConfig.PACING_LOSS_WINDOW_MS * 1_000_000L;
+            if (repeated && flow.outstanding > 0) {
+                // klienti nuk e mori pergjigjen dhe po e riprovon
+                flow.cwnd = Math.max(ServerConfig.PACING_MIN_CWND, flow.cwnd / 2);
+                flow.tokens = Math.min(flow.tokens, flow.cwnd);
+                flow.losses++;
+            } else if (flow.outstanding > 0) {
+                double sampleMs = (now - flow.lastSendNanos) / 1_000_000.0;
+                if (sampleMs < ServerConfig.PACING_MAX_RTT_MS) {
+                    flow.srttMs = Math.max(ServerConfig.PACING_MIN_RTT_MS, flow.srttMs * 7 / 8 + sampleMs / 8);
+                }
+                flow.cwnd = Math.min(ServerConfig.PACING_MAX_CWND, flow.cwnd + flow.outstanding / flow.cwnd);
+            }
+            flow.outstanding = 0;
+            flow.lastRequestHash = hash;
+            flow.lastRequestNanos = now;
+        }
+    }
+
+    public void forget(SocketAddress address) {
+        flows.remove(address);
+    }
+
+    // thirret nga kontrolli i klienteve joaktive: heq flow-t pa rradhe qe s'kane derguar prej idleMs
+    public void pruneIdle(long idleMs) {
+        long limit = System.nanoTime() - idleMs * 1_000_000L;
+        for (Flow flow : flows.values()) {
+            synchronized (flow) {
+                if (flow.queue.isEmpty() && flow.lastSendNanos - limit < 0) {
+                    flows.remove(flow.address, flow);
+                }
+            }
+        }
+    }
+
+    public String buildStats() {
+        List<Flow> snapshot = new ArrayList<>(flows.values());
+        snapshot.sort(Comparator.comparingInt((Flow f) -> f.queueSize()).reversed());
+        StringBuilder sb = new StringBuilder();
+        sb.append("Pacing: ").append(snapshot.size()).append(" flow(s), ").append(pacedDatagrams.get())
+                .append(" paced, ").append(droppedDatagrams.get()).append(" dropped (queue full), ")
+                .append(unpacedDatagrams.get()).append(" unpaced (no session)\n");
+        for (Flow flow : snapshot.subList(0, Math.min(5, snapshot.size()))) {
+            synchronized (flow) {
+                sb.append(String.format("  %s cwnd=%.1f srtt=%.1f ms queued=%d dropped=%d losses=%d%n",
+                        flow.address, flow.cwnd, flow.srttMs, flow.queue.size(), flow.dropped, flow.losses));
+            }
+        }
+        return sb.toString();
+    }
+
+    // ================== GJENDJA PER DESTINACION ==================
+    private static final class Flow {
+        private final SocketAddress address;
+        private final Deque<Datagram> queue = new ArrayDeque<>();
+        private double cwnd = ServerConfig.PACING_INITIAL_CWND;
+        private double tokens = ServerConfig.PACING_INITIAL_CWND;
+        private double srttMs = ServerConfig.PACING_INITIAL_RTT_MS;
+        private long lastRefillNanos = System.nanoTime();
+        private long lastSendNanos;
+        private int outstanding;
+        private int lastRequestHash;
+        private long lastRequestNanos;
+        private long losses;
+        private long dropped;
+
+        private Flow(SocketAddress address) {
+            this.address = address;
+            this.lastSendNanos = System.nanoTime();
+        }
+
+        // token-at rriten me shpejtesi cwnd / srtt dhe lejojne nje shperthim deri ne cwnd datagrame
+        private void refill(long now) {
+            double elapsedMs = (now - lastRefillNanos) / 1_000_000.0;
+            tokens = Math.min(Math.max(1, cwnd), tokens + elapsedMs * cwnd / srttMs);
+            lastRefillNanos = now;
+        }
+
+        private void consume(long now) {
+            tokens -= 1;
+            lastSendNanos = now;
+            outstanding++;
+        }
+
+        private long nanosUntilToken() {
+            double missing = Math.max(0, 1 - tokens);
+            return Math.max(100_000L, (long) (missing * srttMs / cwnd * 1_000_000.0));
+        }
+
+        private synchronized int queueSize() {
+            return queue.size();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pergjigjet e fundit te nje sesioni sipas id-se se kerkeses (shih RequestEnvelope).
+ * Kerkesa e ritransmetuar nuk ekzekutohet perseri: merr te njejtat datagrame nga memoria,
+ * keshtu /upload, /delete ose /patch ekzekutohen te shumten nje here dhe /read nuk e perserit I/O-n.
+ * Kufizohet ne numer hyrjesh dhe bajte per sesion dhe zhduket bashke me sesionin.
+ * Pergjigjja me e madhe se REPLAY_MAX_ENTRY_BYTES nuk ruhet: kerkesat vetem-lexim ekzekutohen perseri,
+ * per te tjerat ruhet vetem TOO_LARGE, qe ndryshimi te mos aplikohet dy here.
+ */
+public class ReplayCache {
+
+    public static final String TOO_LARGE = "ERR Reply too large to replay; the request was already executed, query the result again";
+
+    // komandat qe mund te ekzekutohen perseri pa pasoja
+    private static final Set<String> READ_ONLY = Set.of(ServerConfig.CMD_READ, ServerConfig.CMD_DOWNLOAD,
+            ServerConfig.CMD_LIST, ServerConfig.CMD_SEARCH, ServerConfig.CMD_INFO, ServerConfig.CMD_DU,
+            ServerConfig.CMD_SIGNATURE, ServerConfig.CMD_STATS, ServerConfig.CMD_LOGS);
+
+    // responses == null: kerkesa ende po ekzekutohet
+    public record Entry(List<String> responses, long bytes, long createdMillis) {
+        public boolean isDone() {
+            return responses != null;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long totalBytes;
+
+    // null per kerkese te re (shenohet "ne ekzekutim"), perndryshe hyrja ekzistuese
+    public synchronized Entry begin(String id) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        Entry existing = entries.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        entries.put(id, new Entry(null, 0, now));
+        return null;
+    }
+
+    // message: kerkesa origjinale, per te ditur nese pergjigjja e madhe mund te rillogaritet
+    public synchronized void complete(String id, String message, List<String> responses) {
+        Entry running = entries.remove(id);
+        if (running == null) {
+            return;
+        }
+        long bytes = 0;
+        for (String response : responses) {
+            bytes += response.length();
+        }
+        if (bytes > ServerConfig.REPLAY_MAX_ENTRY_BYTES) {
+            if (isIdempotent(message)) {
+                return; // lexim: perseritja do te ekzekutohet perseri
+            }
+            responses = List.of(TOO_LARGE);
+            bytes = TOO_LARGE.length();
+        }
+        entries.put(id, new Entry(List.copyOf(responses), bytes, running.createdMillis()));
+        totalBytes += bytes;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext() && (entries.size() > ServerConfig.REPLAY_MAX_ENTRIES
+                || totalBytes > ServerConfig.REPLAY_MAX_BYTES)) {
+            totalBytes -= eldest.next().bytes();
+            eldest.remove();
+        }
+    }
+
+    // HELLO i ri: klienti mund te kete rifilluar numerimin e id-ve
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // BATCH eshte i perseritshem vetem kur te gjitha komandat e tij jane
+    static boolean isIdempotent(String message) {
+        if (message.startsWith(BatchProtocol.BATCH + "\n")) {
+            return BatchProtocol.parseRequest(message).stream().allMatch(ReplayCache::isReadOnly);
+        }
+        return isReadOnly(message);
+    }
+
+    private static boolean isReadOnly(String command) {
+        String trimmed = command.trim();
+        int end = 0;
+        while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end))) {
+            end++;
+        }
+        String name = trimmed.substring(0, end);
+        return READ_ONLY.contains(name.startsWith("/") ? name : name.toUpperCase());
+    }
+
+    private void expire(long now) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if (now - entry.createdMillis() <= ServerConfig.CLIENT_TIMEOUT_MS) {
+                return;
+            }
+            totalBytes -= entry.bytes();
+            eldest.remove();
+        }
+    }
+}
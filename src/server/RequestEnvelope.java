@@ -0,0 +1,37 @@
+package server;
+
+/**
+ * Zarfi i kerkesave: klienti i paraprin çdo komandes me "#<id> " dhe serveri e kthen te njejtin id
+ * ne krye te çdo datagrami te pergjigjes. Keshtu klienti e ritransmeton kerkesen pa rrezik qe
+ * pergjigjja e vonuar e nje kerkese te meparshme te merret si pergjigje e komandes aktuale.
+ * Mesazhet pa zarf (HELLO nga kliente te vjeter, EVENT, REPL) trajtohen si me pare.
+ */
+public final class RequestEnvelope {
+
+    public static final char PREFIX = '#';
+
+    private RequestEnvelope() {
+    }
+
+    public record Parsed(String id, String body) {
+        public boolean hasId() {
+            return id != null;
+        }
+    }
+
+    public static String wrap(String id, String body) {
+        return PREFIX + id + " " + body;
+    }
+
+    // id eshte null kur mesazhi nuk ka zarf; body mbetet i paprekur
+    public static Parsed parse(String message) {
+        if (message == null || message.isEmpty() || message.charAt(0) != PREFIX) {
+            return new Parsed(null, message);
+        }
+        int space = message.indexOf(' ');
+        if (space <= 1 || space >= ServerConfig.REQUEST_ID_MAX_BYTES) {
+            return new Parsed(null, message);
+        }
+        return new Parsed(message.substring(1, space), message.substring(space + 1));
+    }
+}
@@ -0,0 +1,133 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bajtet e alokuara dhe koha CPU per çdo kerkese, te matura me ThreadMXBean ne thread-in e workerit
+ * (pa profiler te jashtem). Mblidhen sipas komandes dhe sipas sesionit; STATS tregon komandat me te renda.
+ * Puna qe kryhet ne thread-a te tjere (komandat paralele te batch-it, pacer-i) nuk hyn ne matje.
+ */
+public class RequestProfiler {
+
+    private static final int MAX_COMMANDS = 64;   // komandat e panjohura bashkohen te "other"
+    private static final int TOP_COMMANDS = 8;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final boolean allocationSupported;
+    private final boolean cpuSupported;
+    private final Map<String, Usage> byCommand = new ConcurrentHashMap<>();
+    private final LongAdder totalAllocated = new LongAdder();
+    private final LongAdder totalCpuNanos = new LongAdder();
+
+    public RequestProfiler() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean sun ? sun : null;
+        allocationSupported = threads != null && threads.isThreadAllocatedMemorySupported();
+        cpuSupported = bean.isCurrentThreadCpuTimeSupported();
+        if (allocationSupported && !threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        if (cpuSupported && !bean.isThreadCpuTimeEnabled()) {
+            bean.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    // ================== MATJA ==================
+    // gjendja e thread-it aktual ne fillim te kerkeses
+    public record Mark(long allocatedBytes, long cpuNanos) {
+    }
+
+    public Mark begin() {
+        return new Mark(allocatedBytes(), cpuNanos());
+    }
+
+    public void end(Mark mark, String message, ClientSession session) {
+        long allocated = Math.max(0, allocatedBytes() - mark.allocatedBytes());
+        long cpu = Math.max(0, cpuNanos() - mark.cpuNanos());
+        totalAllocated.add(allocated);
+        totalCpuNanos.add(cpu);
+        String command = commandOf(message);
+        Usage usage = byCommand.get(command);
+        if (usage == null) {
+            usage = byCommand.size() < MAX_COMMANDS ? byCommand.computeIfAbsent(command, c -> new Usage())
+                    : byCommand.computeIfAbsent("other", c -> new Usage());
+        }
+        usage.add(allocated, cpu);
+        if (session != null) {
+            session.addResourceUsage(allocated, cpu);
+        }
+    }
+
+    private long allocatedBytes() {
+        return allocationSupported ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private long cpuNanos() {
+        return cpuSupported ? ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() : 0;
+    }
+
+    // "/download x offset=.. fec=4" -> "/download fec"; "stats" -> "STATS"; "#<id>" hiqet me pare nga UDPServer
+    static String commandOf(String message) {
+        int end = 0;
+        while (end < message.length() && !Character.isWhitespace(message.charAt(end))) {
+            end++;
+        }
+        String command = message.substring(0, end);
+        if (!command.startsWith("/")) {
+            command = command.toUpperCase();
+        }
+        if (command.equals(ServerConfig.CMD_DOWNLOAD) && FecCodec.isFecRequest(message)) {
+            return command + " fec";
+        }
+        return command.isEmpty() || command.length() > 16 ? "other" : command;
+    }
+
+    // ================== RAPORTI ==================
+    private static final class Usage {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAccumulator maxAllocated = new LongAccumulator(Math::max, 0);
+
+        private void add(long bytes, long cpu) {
+            requests.increment();
+            allocated.add(bytes);
+            cpuNanos.add(cpu);
+            maxAllocated.accumulate(bytes);
+        }
+    }
+
+    public String buildStats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Request cost: ").append(formatBytes(totalAllocated.sum())).append(" allocated, ")
+                .append(String.format("%.1f", totalCpuNanos.sum() / 1_000_000.0)).append(" ms CPU")
+                .append(allocationSupported ? "" : " (allocation tracking not supported)").append("\n");
+        List<Map.Entry<String, Usage>> top = new ArrayList<>(byCommand.entrySet());
+        top.sort((a, b) -> Long.compare(b.getValue().allocated.sum(), a.getValue().allocated.sum()));
+        for (Map.Entry<String, Usage> entry : top.subList(0, Math.min(TOP_COMMANDS, top.size()))) {
+            Usage usage = entry.getValue();
+            long requests = Math.max(1, usage.requests.sum());
+            sb.append(String.format("  %-14s %6d req, %s (%s/req, max %s), CPU %.1f ms (%.3f ms/req)%n",
+                    entry.getKey(), usage.requests.sum(), formatBytes(usage.allocated.sum()),
+                    formatBytes(usage.allocated.sum() / requests), formatBytes(usage.maxAllocated.get()),
+                    usage.cpuNanos.sum() / 1_000_000.0, usage.cpuNanos.sum() / 1_000_000.0 / requests));
+        }
+        return sb.toString();
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
@@ -1,5 +1,9 @@
 package server;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
 public final class ServerConfig {
 
     private ServerConfig() {
@@ -14,21 +18,54 @@ public final class ServerConfig {
     public static final String ENV_SERVER_PORT = "UDP_SERVER_PORT";
     public static final String PROP_SERVER_HOST = "udp.server.host";
     public static final String PROP_SERVER_PORT = "udp.server.port";
+    public static final String ENV_CLUSTER_NODES = "UDP_CLUSTER_NODES";
+    public static final String PROP_CLUSTER_NODES = "udp.cluster.nodes";   // p.sh. 127.0.0.1:5000,127.0.0.1:5001
+    public static final String ENV_CLUSTER_SECRET = "UDP_CLUSTER_SECRET";
+    public static final String PROP_CLUSTER_SECRET = "udp.cluster.secret";  // i njejti ne te gjitha nyjet
+    public static final String PROP_WORKERS_MIN = "udp.workers.min";
+    public static final String PROP_WORKERS_MAX = "udp.workers.max";
+    public static final String ENV_DATA_DIR = "UDP_DATA_DIR";
+    public static final String PROP_DATA_DIR = "udp.data.dir";
+    public static final String ENV_JFR_FILE = "UDP_JFR";
+    public static final String PROP_JFR_FILE = "udp.jfr";            // p.sh. -Dudp.jfr=logs/server.jfr
 
     public static final int MAX_CLIENTS = 10;
     public static final long CLIENT_TIMEOUT_MS = 20_000L;
 
+    public static final int INITIAL_WORKERS = 8;
+    public static final int DEFAULT_MIN_WORKERS = 2;
+    public static final int DEFAULT_MAX_WORKERS = 32;
+    public static final long POOL_CONTROL_INTERVAL_MS = 1_000L;
+    public static final long POOL_WAIT_HIGH_MS = 5L;   // mbi kete pritje ne rradhe shtohen workera
+    public static final long POOL_WAIT_LOW_MS = 1L;    // nen kete (dhe me pak pune) hiqen workera
+
     public static final String LOGS_DIR = "logs";
     public static final String STATS_LOG_FILE = LOGS_DIR + "/server_stats.txt";
     public static final String MSG_LOG_FILE = LOGS_DIR + "/messages.log";
+    public static final String MSG_LOG_PREFIX = LOGS_DIR + "/messages_";     // + <port>.log
+    public static final long MSG_LOG_MAX_BYTES = 10L * 1024 * 1024;   // rotacion pas 10 MB
+    public static final long MSG_LOG_MAX_AGE_MS = 3_600_000L;         // ose pas 1 ore
+    public static final String STATE_FILE_PREFIX = LOGS_DIR + "/server_state_";   // + <port>.bin
+    public static final long STATE_SNAPSHOT_INTERVAL_MS = 5_000L;
+    public static final String CATALOG_FILE = "catalog.bin";               // ne data/, prane blobs
+    public static final long CATALOG_FLUSH_MS = 5_000L;
+    public static final String STATS_HISTORY_PREFIX = LOGS_DIR + "/stats_history_";  // + <port>.bin
+    // {rezolucioni ms, numri i sloteve}: 1 ore me 1 s, 1 dite me 1 min, 30 dite me 1 ore
+    public static final long[][] STATS_HISTORY_TIERS = {
+            {1_000L, 3_600},
+            {60_000L, 1_440},
+            {3_600_000L, 720}
+    };
 
     public static final String DATA_DIR = "data";
     public static final String SERVER_FILES_DIR = DATA_DIR + "/server_files";
     public static final String UPLOADS_DIR = DATA_DIR + "/uploads";
     public static final String DOWNLOADS_DIR = DATA_DIR + "/downloads";
+    public static final String BLOBS_DIR = DATA_DIR + "/blobs";
 
     public static final String CMD_HELLO = "HELLO";
     public static final String CMD_STATS = "STATS";
+    public static final String CMD_LOGS = "LOGS";
 
     public static final String CMD_LIST = "/list";
     public static final String CMD_READ = "/read";
@@ -38,7 +75,70 @@ public final class ServerConfig {
     public static final String CMD_SEARCH = "/search";
     public static final String CMD_INFO = "/info";
     public static final String CMD_EXIT = "/exit";
+    public static final String CMD_SIGNATURE = "/signature";
+    public static final String CMD_PATCH = "/patch";
+    public static final String CMD_SYNC = "/sync";
+    public static final String CMD_BATCH = "/batch";
+    public static final String CMD_DU = "/du";
+    public static final String CMD_FEC = "/fec";
+    public static final String CMD_MTU = "/mtu";
+    public static final String CMD_WATCH = "/watch";
+    public static final String CMD_UNWATCH = "/unwatch";
+
+    public static final int DELTA_BLOCK_SIZE = 256;
+    public static final int MAX_PATCH_BYTES = 64 * 1024 * 1024;   // file-i i rindertuar nga /patch
+    public static final int RANGE_CHUNK_SIZE = 4096;     // sa bajte kerkon klienti per pjese
+    public static final long WATCH_FLUSH_MS = 500L;       // ngjarjet e /watch dergohen ne grupe çdo 500 ms
+    public static final int WATCH_MAX_PENDING = 256;      // mbi kete numer klientit i dergohet OVERFLOW
+    public static final int PAGE_DEFAULT_LIMIT = 100;
+    public static final int PAGE_MAX_LIMIT = 500;
+    public static final int PAGE_MAX_BYTES = 7_000;   // faqja duhet te hyje ne nje datagram
+    public static final int BATCH_MAX_COMMANDS = 256;
+    public static final double PACING_INITIAL_CWND = 4;       // datagrame per srtt
+    public static final double PACING_MIN_CWND = 1;
+    public static final double PACING_MAX_CWND = 64;
+    public static final double PACING_INITIAL_RTT_MS = 10;
+    public static final double PACING_MIN_RTT_MS = 1;
+    public static final double PACING_MAX_RTT_MS = 1_000;    // mostra me te gjata jane kohe mendimi e klientit
+    public static final long PACING_LOSS_WINDOW_MS = 10_000L; // kerkese identike brenda ketij afati = ritransmetim
+    public static final int PACING_MAX_QUEUE = 1024;
+    public static final int BATCH_MAX_RESPONSE_BYTES = 7_000;   // nen buffer-in 8192 te klientit
+    public static final long REPLICATION_RETRY_MS = 500L;
+    public static final int REPLICATION_MAX_ATTEMPTS = 5;         // raunde ridergimi pa asnje ACK
+    public static final int REPLICATION_WINDOW = 32;              // pjese pa ACK per nyje dhe file
+    public static final int REPLICATION_MAX_FILE_BYTES = 16 * 1024 * 1024;   // me te medhenjte nuk replikohen
+    public static final int FEC_MAX_GROUP = 8;               // pjese te dhenash per nje paritet
+    public static final int REQUEST_ID_MAX_BYTES = 16;       // "#<id> " para komandes, jashte BUFFER_SIZE
+    public static final long RTO_INITIAL_MS = 300L;          // para mostres se pare te RTT
+    public static final long RTO_MIN_MS = 30L;
+    public static final long RTO_MAX_MS = 3_000L;
+    public static final long RTO_FOLLOW_UP_MIN_MS = 100L;    // pritja per pjeset e tjera te nje pergjigjeje
+    public static final int DATAGRAM_MIN = 1_200;            // kalon pa fragmentim ne çdo rruge IPv4/IPv6
+    public static final int DATAGRAM_MAX = 8_192;            // buffer-i i marrjes se klientit; sesionet pa /mtu
+    public static final int DATAGRAM_HEADER_RESERVE = 192;   // zarfi "#<id> " + koka DATA_RANGE / DATA_FEC
+    public static final int PAGE_CURSOR_RESERVE = 360;       // rreshti next= i nje faqeje
+    public static final long JFR_EVENT_THRESHOLD_MS = 0L;    // 0 = regjistrohen te gjitha paketat/komandat; >0 vetem ato me te gjata
+    public static final long JFR_MAX_AGE_MINUTES = 30L;
+    public static final long JFR_MAX_SIZE_BYTES = 100L * 1024 * 1024;
+    public static final int SENDER_QUEUE_CAPACITY = 4_096;   // datagrame qe presin thread-in e dergimit
+    public static final int SENDER_BATCH = 64;
+    public static final long SENDER_WAIT_MS = 50L;           // pritja e workerit kur rradha eshte plot
+    public static final int REPLAY_MAX_ENTRIES = 64;         // pergjigje te ruajtura per sesion
+    public static final long REPLAY_MAX_ENTRY_BYTES = 65_536L;
+    public static final long REPLAY_MAX_BYTES = 524_288L;    // per sesion
+    // pjesa me e madhe qe, ne base64 me koken DATA_RANGE, hyn ne buffer-in DATAGRAM_MAX te klientit
+    public static final int MAX_RANGE_LENGTH = (DATAGRAM_MAX - DATAGRAM_HEADER_RESERVE) / 4 * 3;
+
+
+    // bajtet e file-it qe hyjne ne nje datagram pas kokes (headerBytes pervec rezerves) dhe base64
+    public static int payloadForDatagram(int datagramBytes, int headerBytes) {
+        return Math.max(3, (datagramBytes - DATAGRAM_HEADER_RESERVE - headerBytes) / 4 * 3);
+    }
 
+    // kufiri i nje faqeje /list, /search, /du per madhesine e datagrameve te sesionit
+    public static int pageBytesFor(int datagramBytes) {
+        return Math.max(256, Math.min(PAGE_MAX_BYTES, datagramBytes - DATAGRAM_HEADER_RESERVE - PAGE_CURSOR_RESERVE));
+    }
 
     public static String resolveServerHost() {
         String prop = System.getProperty(PROP_SERVER_HOST);
@@ -66,6 +166,82 @@ public final class ServerConfig {
         return DEFAULT_SERVER_PORT;
     }
 
+    // te gjitha nyjet e klasterit (perfshire kete); bosh kur serveri punon i vetem
+    public static List<InetSocketAddress> resolveClusterNodes() {
+        String value = System.getProperty(PROP_CLUSTER_NODES);
+        if (value == null || value.isBlank()) {
+            value = System.getenv(ENV_CLUSTER_NODES);
+        }
+        List<InetSocketAddress> nodes = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return nodes;
+        }
+        for (String entry : value.split(",")) {
+            String trimmed = entry.trim();
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            Integer port = tryParsePort(trimmed.substring(colon + 1));
+            if (port != null) {
+                nodes.add(new InetSocketAddress(trimmed.substring(0, colon), port));
+            }
+        }
+        return nodes;
+    }
+
+    // sekreti i perbashket i nyjeve per mac-un e mesazheve REPL; null kur nuk eshte vendosur
+    public static String resolveClusterSecret() {
+        String prop = System.getProperty(PROP_CLUSTER_SECRET);
+        if (prop != null && !prop.isBlank()) {
+            return prop.trim();
+        }
+        String env = System.getenv(ENV_CLUSTER_SECRET);
+        if (env != null && !env.isBlank()) {
+            return env.trim();
+        }
+        return null;
+    }
+
+    public static int resolveWorkerBound(String property, int fallback) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+
+    // lejon disa instanca ne te njejtin host me direktoriume te ndara te dhenash
+    public static String resolveDataDir() {
+        String prop = System.getProperty(PROP_DATA_DIR);
+        if (prop != null && !prop.isBlank()) {
+            return prop.trim();
+        }
+        String env = System.getenv(ENV_DATA_DIR);
+        if (env != null && !env.isBlank()) {
+            return env.trim();
+        }
+        return DATA_DIR;
+    }
+
+    // file-i i regjistrimit JFR qe nis bashke me serverin; null kur nuk eshte kerkuar
+    public static String resolveJfrFile() {
+        String prop = System.getProperty(PROP_JFR_FILE);
+        if (prop != null && !prop.isBlank()) {
+            return prop.trim();
+        }
+        String env = System.getenv(ENV_JFR_FILE);
+        if (env != null && !env.isBlank()) {
+            return env.trim();
+        }
+        return null;
+    }
+
     private static Integer tryParsePort(String value) {
         if (value == null || value.isBlank()) {
             return null;
@@ -0,0 +1,167 @@
+package server;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ngjarjet JFR te serverit: paketa, komanda, pergjigja dhe sesioni. Kur nuk ka regjistrim aktiv
+ * kushtojne pothuajse asgje (shouldCommit() == false), prandaj mbeten gjithmone ne kod.
+ * Me -Dudp.jfr=<file.jfr> serveri nis vete nje regjistrim te vazhdueshem qe shkruhet ne dalje.
+ */
+public final class ServerEvents {
+
+    private ServerEvents() {
+    }
+
+    @Name("udpserver.Packet")
+    @Label("Packet")
+    @Description("Nje datagram i marre, nga marrja deri ne perfundimin e trajtimit")
+    @Category("UDP File Server")
+    @StackTrace(false)
+    public static final class PacketEvent extends Event {
+        @Label("Client")
+        public String client;
+
+        @Label("Command")
+        public String command;
+
+        @Label("Size")
+        @DataAmount
+        public int bytes;
+    }
+
+    @Name("udpserver.Command")
+    @Label("File Command")
+    @Description("Nje komande e FileCommandHandler")
+    @Category("UDP File Server")
+    @StackTrace(false)
+    public static final class CommandEvent extends Event {
+        @Label("Command")
+        public String command;
+
+        @Label("File")
+        public String file;
+
+        @Label("Request Size")
+        @DataAmount
+        public long requestBytes;
+
+        @Label("Response Size")
+        @DataAmount
+        public long responseBytes;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("udpserver.Send")
+    @Label("Send Response")
+    @Description("Nje pergjigje e dhene per dergim (pacer-i mund ta mbaje ne rradhe)")
+    @Category("UDP File Server")
+    @StackTrace(false)
+    public static final class SendEvent extends Event {
+        @Label("Client")
+        public String client;
+
+        @Label("Size")
+        @DataAmount
+        public int bytes;
+    }
+
+    @Name("udpserver.Session")
+    @Label("Session")
+    @Description("Krijimi ose skadimi i nje sesioni klienti")
+    @Category("UDP File Server")
+    public static final class SessionEvent extends Event {
+        @Label("Client")
+        public String client;
+
+        @Label("Client Id")
+        public String clientId;
+
+        @Label("Action")
+        public String action;
+    }
+
+    // ================== NDIHMESAT ==================
+    public static void commitCommand(CommandEvent event, String commandLine, List<String> responses) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        long responseBytes = 0;
+        for (String response : responses) {
+            responseBytes += response.length();
+        }
+        event.command = RequestProfiler.commandOf(commandLine);
+        event.file = fileArgument(commandLine);
+        event.requestBytes = commandLine.length();
+        event.responseBytes = responseBytes;
+        event.succeeded = !responses.isEmpty() && !responses.get(0).startsWith("ERR");
+        event.commit();
+    }
+
+    public static void session(String action, ClientSession session) {
+        SessionEvent event = new SessionEvent();
+        if (event.shouldCommit()) {
+            event.client = String.valueOf(session.getAddress());
+            event.clientId = session.getClientId();
+            event.action = action;
+            event.commit();
+        }
+    }
+
+    // argumenti i pare pas komandes ("..." ose deri te hapesira), pa opsionet key=value
+    static String fileArgument(String commandLine) {
+        int start = commandLine.indexOf(' ');
+        if (start < 0) {
+            return null;
+        }
+        String rest = commandLine.substring(start + 1).stripLeading();
+        if (rest.startsWith("-r ")) {
+            rest = rest.substring(3).stripLeading();
+        }
+        String name;
+        if (rest.startsWith("\"")) {
+            int close = rest.indexOf('"', 1);
+            name = close > 0 ? rest.substring(1, close) : rest.substring(1);
+        } else {
+            int end = 0;
+            while (end < rest.length() && !Character.isWhitespace(rest.charAt(end))) {
+                end++;
+            }
+            name = rest.substring(0, end);
+        }
+        if (name.isEmpty() || name.contains("=")) {
+            return null;
+        }
+        return name.length() > 128 ? name.substring(0, 128) : name;
+    }
+
+    // ================== REGJISTRIMI NE START ==================
+    // profili "default" i JDK-se plus ngjarjet e serverit; mbahen ne disk dhe shkruhen ne file kur del JVM-ja
+    public static Recording startRecording(Path destination) throws Exception {
+        Recording recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("udp-server");
+        recording.enable(PacketEvent.class).withThreshold(Duration.ofMillis(ServerConfig.JFR_EVENT_THRESHOLD_MS));
+        recording.enable(CommandEvent.class).withThreshold(Duration.ofMillis(ServerConfig.JFR_EVENT_THRESHOLD_MS));
+        recording.enable(SendEvent.class);
+        recording.enable(SessionEvent.class);
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofMinutes(ServerConfig.JFR_MAX_AGE_MINUTES));
+        recording.setMaxSize(ServerConfig.JFR_MAX_SIZE_BYTES);
+        recording.setDestination(destination);
+        recording.setDumpOnExit(true);
+        recording.start();
+        return recording;
+    }
+}
@@ -0,0 +1,99 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Snapshot binar i sesioneve dhe i totaleve te trafikut, qe restarti i serverit
+ * te mos i detyroje te gjithe klientet te bejne HELLO njekohesisht.
+ */
+public final class StateSnapshot {
+
+    private static final int MAGIC = 0x55445053; // "UDPS"
+    private static final int VERSION = 1;
+
+    private StateSnapshot() {
+    }
+
+    public static void save(Path file, Map<SocketAddress, ClientSession> sessions, TraficMonitor monitor) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(monitor.getTotalBytesReceived());
+            out.writeLong(monitor.getTotalBytesSent());
+
+            var snapshot = sessions.values().stream()
+                    .filter(s -> s.getAddress() instanceof InetSocketAddress)
+                    .toList();
+            out.writeInt(snapshot.size());
+            for (ClientSession session : snapshot) {
+                InetSocketAddress address = (InetSocketAddress) session.getAddress();
+                out.writeUTF(address.getAddress().getHostAddress());
+                out.writeShort(address.getPort());
+                out.writeUTF(session.getClientId());
+                out.writeByte(session.getPermission().ordinal());
+                out.writeBoolean(session.isAuthenticated());
+                out.writeLong(session.getLastActive());
+                out.writeLong(session.getMessagesCount());
+                out.writeLong(session.getBytesReceived());
+                out.writeLong(session.getBytesSent());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // kthen numrin e sesioneve te rikthyera; sesionet qe do te kishin skaduar gjate pushimit injorohen
+    public static int load(Path file, Map<SocketAddress, ClientSession> sessions, TraficMonitor monitor) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Ignoring unknown state snapshot format: " + file);
+                return 0;
+            }
+            long savedAt = in.readLong();
+            monitor.restoreTotals(in.readLong(), in.readLong());
+
+            long now = System.currentTimeMillis();
+            ClientSession.Permission[] permissions = ClientSession.Permission.values();
+            int count = in.readInt();
+            int restored = 0;
+            for (int i = 0; i < count; i++) {
+                String host = in.readUTF();
+                int port = in.readShort() & 0xFFFF;
+                String clientId = in.readUTF();
+                int permission = in.readByte();
+                boolean authenticated = in.readBoolean();
+                long lastActive = in.readLong();
+                long messages = in.readLong();
+                long received = in.readLong();
+                long sent = in.readLong();
+
+                if (savedAt - lastActive > ServerConfig.CLIENT_TIMEOUT_MS
+                        || permission < 0 || permission >= permissions.length) {
+                    continue;
+                }
+                // koha e pushimit nuk i numerohet klientit si inaktivitet
+                long shiftedLastActive = Math.min(now, lastActive + (now - savedAt));
+                InetSocketAddress address = new InetSocketAddress(host, port);
+                sessions.put(address, new ClientSession(address, clientId, permissions[permission],
+                        authenticated, shiftedLastActive, messages, received, sent));
+                restored++;
+            }
+            return restored;
+        }
+    }
+}
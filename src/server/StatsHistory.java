@@ -0,0 +1,213 @@
+package server;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Histori e statistikave ne nje file binar me madhesi fikse (ring buffer me disa nivele).
+ * Çdo slot: [fillimi i intervalit ms][bytes in][bytes out][paketa in][paketa out] per ate interval.
+ * Niveli 0 ka rezolucion 1 s, nivelet e tjera jane versione te agreguara (1 min, 1 ore).
+ */
+public class StatsHistory {
+
+    private static final int MAGIC = 0x53545348; // "STSH"
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 5 * Long.BYTES;
+    private static final int MAX_ROWS = 60;
+
+    private record Tier(long resolutionMs, int slots, long offset) {
+    }
+
+    private final Tier[] tiers;
+    private final FileChannel channel;
+    private final TraficMonitor monitor;
+    private final long[] lastTotals = new long[4];
+
+    public StatsHistory(Path file, TraficMonitor monitor) throws IOException {
+        this.monitor = monitor;
+        long[][] layout = ServerConfig.STATS_HISTORY_TIERS;
+        this.tiers = new Tier[layout.length];
+        long offset = HEADER_SIZE;
+        for (int i = 0; i < layout.length; i++) {
+            tiers[i] = new Tier(layout[i][0], (int) layout[i][1], offset);
+            offset += layout[i][1] * RECORD_SIZE;
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = new RandomAccessFile(file.toFile(), "rw").getChannel();
+        initFile(offset);
+        snapshotTotals(lastTotals);
+    }
+
+    private void initFile(long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        boolean valid = channel.size() == size && channel.read(header, 0) == HEADER_SIZE
+                && header.getInt(0) == MAGIC && header.getLong(8) == size;
+        if (valid) {
+            return;
+        }
+        // layout i ri ose file i demtuar: fillo nga zero
+        channel.truncate(0);
+        header.clear();
+        header.putInt(MAGIC).putInt(tiers.length).putLong(size).flip();
+        channel.write(header, 0);
+        channel.write(ByteBuffer.allocate(1), size - 1);
+    }
+
+    public void start() {
+        Thread t = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(tiers[0].resolutionMs());
+                    sample(System.currentTimeMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException e) {
+                    System.err.println("Failed to write stats history: " + e.getMessage());
+                }
+            }
+        }, "stats-history");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ================== SHKRIMI ==================
+    public synchronized void sample(long now) throws IOException {
+        long[] totals = new long[4];
+        snapshotTotals(totals);
+        long[] delta = new long[4];
+        for (int i = 0; i < 4; i++) {
+            delta[i] = totals[i] - lastTotals[i];
+            lastTotals[i] = totals[i];
+        }
+        for (Tier tier : tiers) {
+            long bucket = now - Math.floorMod(now, tier.resolutionMs());
+            long position = slotPosition(tier, bucket);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            channel.read(record, position);
+            record.flip();
+            boolean sameBucket = record.remaining() == RECORD_SIZE && record.getLong(0) == bucket;
+            ByteBuffer updated = ByteBuffer.allocate(RECORD_SIZE);
+            updated.putLong(bucket);
+            for (int i = 0; i < 4; i++) {
+                long previous = sameBucket ? record.getLong((i + 1) * Long.BYTES) : 0;
+                updated.putLong(previous + delta[i]);
+            }
+            updated.flip();
+            channel.write(updated, position);
+        }
+    }
+
+    // ================== LEXIMI ==================
+    // STATS HISTORY <dritarja>, p.sh. 60s, 15m, 6h, 7d
+    public synchronized String query(String window, long now) throws IOException {
+        long windowMs = parseWindow(window);
+        if (windowMs <= 0) {
+            return "ERR Usage: " + ServerConfig.CMD_STATS + " HISTORY <n>[s|m|h|d]";
+        }
+        Tier tier = tiers[tiers.length - 1];
+        for (Tier candidate : tiers) {
+            if (candidate.resolutionMs() * candidate.slots() >= windowMs) {
+                tier = candidate;
+                break;
+            }
+        }
+        long from = now - windowMs;
+        List<long[]> rows = new ArrayList<>();
+        ByteBuffer all = ByteBuffer.allocate(tier.slots() * RECORD_SIZE);
+        channel.read(all, tier.offset());
+        all.flip();
+        while (all.remaining() >= RECORD_SIZE) {
+            long[] row = new long[5];
+            for (int i = 0; i < 5; i++) {
+                row[i] = all.getLong();
+            }
+            if (row[0] > 0 && row[0] >= from - tier.resolutionMs() && row[0] <= now) {
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.comparingLong(r -> r[0]));
+
+        // bashko rreshtat qe pergjigjja te hyje ne nje datagram
+        long rowSpan = tier.resolutionMs();
+        if (rows.size() > MAX_ROWS) {
+            long groupMs = (windowMs + MAX_ROWS - 1) / MAX_ROWS;
+            rowSpan = ((groupMs + tier.resolutionMs() - 1) / tier.resolutionMs()) * tier.resolutionMs();
+            rows = merge(rows, rowSpan);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("DATA\n==== STATS HISTORY (").append(window).append(", step ")
+                .append(rowSpan / 1000).append(" s) ====\n");
+        sb.append("time rx_B/s tx_B/s pkt_in/s pkt_out/s\n");
+        double seconds = rowSpan / 1000.0;
+        for (long[] row : rows) {
+            sb.append(Instant.ofEpochMilli(row[0])).append(String.format(Locale.ROOT, " %.1f %.1f %.2f %.2f%n",
+                    row[1] / seconds, row[2] / seconds, row[3] / seconds, row[4] / seconds));
+        }
+        if (rows.isEmpty()) {
+            sb.append("(no samples)\n");
+        }
+        return sb.toString();
+    }
+
+    private List<long[]> merge(List<long[]> rows, long spanMs) {
+        List<long[]> merged = new ArrayList<>();
+        long[] current = null;
+        for (long[] row : rows) {
+            long bucket = row[0] - Math.floorMod(row[0], spanMs);
+            if (current == null || current[0] != bucket) {
+                current = new long[]{bucket, 0, 0, 0, 0};
+                merged.add(current);
+            }
+            for (int i = 1; i < 5; i++) {
+                current[i] += row[i];
+            }
+        }
+        return merged;
+    }
+
+    private long slotPosition(Tier tier, long bucket) {
+        long slot = Math.floorMod(bucket / tier.resolutionMs(), (long) tier.slots());
+        return tier.offset() + slot * RECORD_SIZE;
+    }
+
+    private void snapshotTotals(long[] into) {
+        into[0] = monitor.getTotalBytesReceived();
+        into[1] = monitor.getTotalBytesSent();
+        into[2] = monitor.getPacketsReceived();
+        into[3] = monitor.getPacketsSent();
+    }
+
+    static long parseWindow(String window) {
+        if (window == null || window.length() < 2) {
+            return -1;
+        }
+        String value = window.trim().toLowerCase(Locale.ROOT);
+        long unit = switch (value.charAt(value.length() - 1)) {
+            case 's' -> 1_000L;
+            case 'm' -> 60_000L;
+            case 'h' -> 3_600_000L;
+            case 'd' -> 86_400_000L;
+            default -> -1L;
+        };
+        if (unit < 0) {
+            return -1;
+        }
+        try {
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            return amount > 0 ? amount * unit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
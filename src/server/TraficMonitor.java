@@ -17,13 +17,37 @@ public class TraficMonitor {
 
     private final AtomicLong totalBytesReceived = new AtomicLong(0);
     private final AtomicLong totalBytesSent = new AtomicLong(0);
+    private final AtomicLong packetsReceived = new AtomicLong(0);
+    private final AtomicLong packetsSent = new AtomicLong(0);
+    private final RequestProfiler requestProfiler = new RequestProfiler();
 
     public void addBytesReceived(int bytes) {
         totalBytesReceived.addAndGet(bytes);
+        packetsReceived.incrementAndGet();
     }
 
-    public void addBytesSent(int bytes) {
+    // nje perditesim per gjithe grupin e OutboundSender
+    public void addBatchSent(long bytes, int packets) {
         totalBytesSent.addAndGet(bytes);
+        packetsSent.addAndGet(packets);
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived.get();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    public RequestProfiler getRequestProfiler() {
+        return requestProfiler;
+    }
+
+    // totalet e ruajtura para restartit
+    public void restoreTotals(long received, long sent) {
+        totalBytesReceived.addAndGet(received);
+        totalBytesSent.addAndGet(sent);
     }
 
     public long getTotalBytesReceived() {
@@ -49,15 +73,19 @@ public class TraficMonitor {
             sb.append("  Last active: ").append(Instant.ofEpochMilli(session.getLastActive())).append("\n");
             sb.append("  Messages: ").append(session.getMessagesCount()).append("\n");
             sb.append("  Bytes received: ").append(session.getBytesReceived()).append("\n");
-            sb.append("  Bytes sent: ").append(session.getBytesSent()).append("\n\n");
+            sb.append("  Bytes sent: ").append(session.getBytesSent()).append("\n");
+            sb.append("  Allocated: ").append(RequestProfiler.formatBytes(session.getAllocatedBytes()))
+                    .append(String.format(", CPU: %.1f ms%n%n", session.getCpuNanos() / 1_000_000.0));
         }
+        sb.append(requestProfiler.buildStats());
         return sb.toString();
     }
 
+    // ruan vetem snapshot-in e fundit; historia e plote mbahet ne StatsHistory (file binar me madhesi fikse)
     public void appendStatsToFile(String stats) {
         ensureLogsDir();
         try (BufferedWriter writer = new BufferedWriter(
-                new FileWriter(Constants.STATS_LOG_FILE, true))) {
+                new FileWriter(Constants.STATS_LOG_FILE, false))) {
 
             writer.write(stats);
             writer.write("\n");
@@ -1,14 +1,19 @@
 package server;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.net.*;
+import java.nio.channels.DatagramChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.stream.IntStream;
 import java.util.concurrent.atomic.AtomicLong;
 import server.ClientSession.Permission;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -31,35 +36,64 @@ public class UDPServer {
         public static final String SERVER_FILES_DIR = DATA_DIR + "/server_files";
         public static final String UPLOADS_DIR = DATA_DIR + "/uploads";
         public static final String DOWNLOADS_DIR = DATA_DIR + "/downloads";
+        public static final String BLOBS_DIR = DATA_DIR + "/blobs";
 
     }
 
     // ================== FUSHAT E SERVERIT ==================
     private DatagramSocket socket;
+    private DatagramChannel channel;
+    private OutboundSender outboundSender;
     private final Map<SocketAddress, ClientSession> sessions = new ConcurrentHashMap<>();
     private final TraficMonitor trafficMonitor = new TraficMonitor();
-    private final FileCommandHandler fileCommandHandler = new FileCommandHandler(Constants.SERVER_FILES_DIR, Constants.UPLOADS_DIR, Constants.DOWNLOADS_DIR);
-    private final ExecutorService workerPool = Executors.newFixedThreadPool(8);
+    private final String dataDir = ServerConfig.resolveDataDir();
+    private final FileCommandHandler fileCommandHandler = new FileCommandHandler(dataDir + "/server_files", dataDir + "/uploads", dataDir + "/downloads", dataDir + "/blobs");
+    private final PacedSender pacedSender = new PacedSender(this::transmit);
+    private final ThreadLocal<String> replyId = new ThreadLocal<>();
+    private final ThreadLocal<ClientSession> replySession = new ThreadLocal<>();
+    private final ThreadLocal<List<String>> replyLog = new ThreadLocal<>();
+    private final AtomicLong replayedRequests = new AtomicLong();
+    private final RequestProfiler requestProfiler = trafficMonitor.getRequestProfiler();
+    private final FileWatcher fileWatcher = new FileWatcher(fileCommandHandler.getServerDir(), this::sendPush);
+    private volatile ClusterReplicator replicator = new ClusterReplicator(List.of(), this::sendToPeer, null);
+    private final AdaptiveWorkerPool workerPool = new AdaptiveWorkerPool(ServerConfig.INITIAL_WORKERS,
+            ServerConfig.resolveWorkerBound(ServerConfig.PROP_WORKERS_MIN, ServerConfig.DEFAULT_MIN_WORKERS),
+            ServerConfig.resolveWorkerBound(ServerConfig.PROP_WORKERS_MAX, ServerConfig.DEFAULT_MAX_WORKERS));
     private final AtomicInteger activeClientCount = new AtomicInteger(0);
     private volatile boolean running = false;
+    private Path stateFile;
+    private volatile MessageLog messageLog;
+    private StatsHistory statsHistory;
 
     // ================== METODA START ==================
-    public void start() throws SocketException {
+    public void start() throws IOException {
         int port = ServerConfig.resolveServerPort();
-        socket = new DatagramSocket(port);
+        // marrja me socket-in bllokues te channel-it, dergimi nga OutboundSender ne te njejtin port
+        channel = DatagramChannel.open().bind(new InetSocketAddress(port));
+        socket = channel.socket();
+        outboundSender = new OutboundSender(channel, trafficMonitor);
+        outboundSender.start();
         running = true;
         System.out.println("UDP Server started on port " + port + " (host " + ServerConfig.resolveServerHost() + ")");
 
+        startFlightRecording();
+        restoreState(port);
+        messageLog = openMessageLog(port);
+        startStatsHistory(port);
+        startCluster(port);
         startIdleChecker();
+        startStateSnapshotter();
+        fileWatcher.start();
+        pacedSender.start();
         startConsoleHint();
 
         while (running) {
             try {
-                byte[] buffer = new byte[Constants.BUFFER_SIZE];
+                byte[] buffer = new byte[Constants.BUFFER_SIZE + ServerConfig.REQUEST_ID_MAX_BYTES];
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 socket.receive(packet);
 
-                workerPool.submit(() -> handlePacket(packet));
+                workerPool.execute(() -> handlePacket(packet));
             } catch (IOException e) {
                 if (running) {
                     System.err.println("Error receiving packet: " + e.getMessage());
@@ -68,20 +102,67 @@ public class UDPServer {
         }
 
         workerPool.shutdown();
-        socket.close();
+        saveState();
+        fileWatcher.stop();
+        replicator.stop();
+        pacedSender.shutdown();
+        outboundSender.shutdown();
+        channel.close();
         System.out.println("Server stopped.");
     }
 
     // ================== HANDLER PER PAKETA ==================
     private void handlePacket(DatagramPacket packet) {
+        // alokimet dhe CPU e kerkeses maten nga marrja deri ne dergimin e pergjigjes
+        RequestProfiler.Mark mark = requestProfiler.begin();
+        ServerEvents.PacketEvent event = new ServerEvents.PacketEvent();
+        event.begin();
         SocketAddress clientAddress = packet.getSocketAddress();
         int length = packet.getLength();
+        String message = "";
+        try {
+            trafficMonitor.addBytesReceived(length);
+
+            message = new String(packet.getData(), 0, length, StandardCharsets.UTF_8).trim();
+            System.out.println("Received from " + clientAddress + ": " + message);
 
-        trafficMonitor.addBytesReceived(length);
+            // kerkesa e re konfirmon pergjigjet e meparshme; e njejta kerkese e perseritur tregon humbje
+            pacedSender.onReceive(clientAddress, message);
 
-        String message = new String(packet.getData(), 0, length, StandardCharsets.UTF_8).trim();
-        System.out.println("Received from " + clientAddress + ": " + message);
+            // mesazhet mes nyjeve te klasterit nuk kane sesion klienti
+            if (replicator.isPeer(clientAddress)) {
+                if (message.startsWith(ClusterReplicator.REPL_ACK + " ")) {
+                    replicator.handleAck(message, clientAddress);
+                    return;
+                }
+                if (message.startsWith(ClusterReplicator.REPL + " ")) {
+                    replicator.handleReplication(message, clientAddress, fileCommandHandler);
+                    return;
+                }
+            }
 
+            // "#<id> <komanda>": id kthehet ne krye te çdo datagrami te pergjigjes
+            RequestEnvelope.Parsed envelope = RequestEnvelope.parse(message);
+            message = envelope.body().trim();
+            replyId.set(envelope.id());
+            try {
+                handleClientMessage(clientAddress, length, message);
+            } finally {
+                replyId.remove();
+                replySession.remove();
+            }
+        } finally {
+            requestProfiler.end(mark, message, sessions.get(clientAddress));
+            if (event.shouldCommit()) {
+                event.client = String.valueOf(clientAddress);
+                event.command = RequestProfiler.commandOf(message);
+                event.bytes = length;
+                event.commit();
+            }
+        }
+    }
+
+    private void handleClientMessage(SocketAddress clientAddress, int length, String message) {
         ClientSession session = sessions.compute(clientAddress, (addr, existing) -> {
             if (existing != null) {
                 return existing;
@@ -94,6 +175,7 @@ public class UDPServer {
             }
             ClientSession newSession = new ClientSession(addr);
             System.out.println("New client registered: " + newSession);
+            ServerEvents.session("created", newSession);
             return newSession;
         });
 
@@ -102,6 +184,7 @@ public class UDPServer {
             return;
         }
 
+        replySession.set(session);
         session.touch();
         session.incrementMessages();
         session.addBytesReceived(length);
@@ -120,6 +203,50 @@ public class UDPServer {
             return;
         }
 
+        // kerkese e ritransmetuar: dergohet pergjigjja e ruajtur, komanda nuk ekzekutohet perseri
+        String requestId = replyId.get();
+        if (requestId == null) {
+            dispatchCommand(session, clientAddress, message);
+            return;
+        }
+        ReplayCache.Entry cached = session.getReplayCache().begin(requestId);
+        if (cached != null) {
+            if (cached.isDone()) {
+                replayedRequests.incrementAndGet();
+                cached.responses().forEach(response -> sendString(response, clientAddress));
+            }
+            return; // ende ne ekzekutim: pergjigjja do te dergohet kur te perfundoje
+        }
+        List<String> responses = new ArrayList<>();
+        replyLog.set(responses);
+        try {
+            dispatchCommand(session, clientAddress, message);
+        } finally {
+            replyLog.remove();
+            session.getReplayCache().complete(requestId, message, responses);
+        }
+    }
+
+    private void dispatchCommand(ClientSession session, SocketAddress clientAddress, String message) {
+        // LOGS <clientId> ... -> mesazhet e nje klienti nga log-u i rotuar
+        if (message.toUpperCase().startsWith(ServerConfig.CMD_LOGS + " ")) {
+            if (!session.getPermission().equals(ADMIN)) {
+                sendString("ERR Permission denied (admin only)", clientAddress);
+                return;
+            }
+            handleLogsCommand(message, clientAddress);
+            return;
+        }
+
+        // STATS HISTORY <dritarja>
+        if (message.toUpperCase().startsWith(ServerConfig.CMD_STATS + " HISTORY")) {
+            if (!session.getPermission().equals(ADMIN)) {
+                sendString("ERR Permission denied (admin only)", clientAddress);
+                return;
+            }
+            handleStatsHistory(message, clientAddress);
+            return;
+        }
 
         // Komanda STATS
         if (ServerConfig.CMD_STATS.equalsIgnoreCase(message)) {
@@ -131,6 +258,47 @@ public class UDPServer {
             return;
         }
 
+        // /watch -> abonim per ngjarjet e server_files (skadon bashke me sesionin)
+        if (message.equalsIgnoreCase(ServerConfig.CMD_WATCH)) {
+            fileWatcher.subscribe(session);
+            sendString("OK Watching server_files (events every " + ServerConfig.WATCH_FLUSH_MS
+                    + " ms, resend " + ServerConfig.CMD_WATCH + " to keep the session alive)", clientAddress);
+            return;
+        }
+        if (message.equalsIgnoreCase(ServerConfig.CMD_UNWATCH)) {
+            boolean removed = fileWatcher.unsubscribe(clientAddress);
+            sendString(removed ? "OK Unwatched" : "ERR Not watching", clientAddress);
+            return;
+        }
+
+        // /mtu <bajte> -> madhesia e datagrameve qe klienti ka provuar se kalojne pa humbje
+        if (message.equals(ServerConfig.CMD_MTU) || message.startsWith(ServerConfig.CMD_MTU + " ")) {
+            handleMtu(session, message.substring(ServerConfig.CMD_MTU.length()).trim());
+            return;
+        }
+
+        // /exit -> sesioni lirohet menjehere (p.sh. workerat e shkarkimit paralel), pa pritur timeout-in
+        if (message.equalsIgnoreCase(ServerConfig.CMD_EXIT)) {
+            sendString("OK Bye", clientAddress);
+            removeSession(clientAddress);
+            return;
+        }
+
+        // BATCH\n<komanda>\n... -> shume komanda me nje datagram
+        if (message.startsWith(BatchProtocol.BATCH + "\n")) {
+            handleBatch(session, message);
+            return;
+        }
+
+        // /download ... fec=<k> -> grup datagramesh me paritet, pa pritur kerkese per secilin
+        if (FecCodec.isFecRequest(message)) {
+            for (String datagram : fileCommandHandler.handleFecDownload(message, session.getPermission().name(),
+                    session.getDatagramLimit())) {
+                sendString(datagram, clientAddress);
+            }
+            return;
+        }
+
         // Këtu duhen trajtuar komandat si /list, /read, /upload, etj.
         // Këtë pjesë mund ta implementojë FileCommandHandler.
         if (message.startsWith("/")) {
@@ -150,6 +318,7 @@ public class UDPServer {
             sendString("Usage: " + ServerConfig.CMD_HELLO + " <clientId> <ADMIN|READ>", address);
             return;
         }
+        session.getReplayCache().clear();
         session.setClientId(payload.clientId());
         session.setPermission(payload.role());
         session.markAuthenticated();
@@ -191,14 +360,55 @@ public class UDPServer {
         return new HelloPayload(clientId, role);
     }
 
+    // ================== MADHESIA E DATAGRAMEVE ==================
+    // faqet, rezultatet e batch-it dhe pjeset FEC te ketij sesioni ndahen sipas kesaj madhesie
+    private void handleMtu(ClientSession session, String argument) {
+        if (!argument.isEmpty()) {
+            try {
+                int requested = Integer.parseInt(argument);
+                session.setDatagramLimit(Math.max(ServerConfig.DATAGRAM_MIN, Math.min(ServerConfig.DATAGRAM_MAX, requested)));
+            } catch (NumberFormatException e) {
+                sendString("ERR Usage: " + ServerConfig.CMD_MTU + " <" + ServerConfig.DATAGRAM_MIN + ".."
+                        + ServerConfig.DATAGRAM_MAX + ">", session.getAddress());
+                return;
+            }
+        }
+        sendString("OK mtu=" + session.getDatagramLimit(), session.getAddress());
+    }
+
     // ================== STATS KOMANDA ==================
     private void handleStatsCommand(ClientSession requester) {
-        String stats = trafficMonitor.buildStats(sessions);
+        int cachedReplies = sessions.values().stream().mapToInt(s -> s.getReplayCache().size()).sum();
+        String stats = trafficMonitor.buildStats(sessions) + workerPool.buildStats() + pacedSender.buildStats()
+                + outboundSender.buildStats() + replicator.buildStats()
+                + "Replay cache: " + cachedReplies + " response(s), " + replayedRequests.get() + " retransmission(s) answered from cache\n";
         System.out.println(stats);
         trafficMonitor.appendStatsToFile(stats);
         sendString(stats, requester.getAddress());
     }
 
+    private void handleStatsHistory(String message, SocketAddress address) {
+        if (statsHistory == null) {
+            sendString("ERR Stats history is not available", address);
+            return;
+        }
+        String window = message.substring((ServerConfig.CMD_STATS + " HISTORY").length()).trim();
+        try {
+            sendString(statsHistory.query(window.isEmpty() ? "5m" : window, System.currentTimeMillis()), address);
+        } catch (IOException e) {
+            sendString("ERR Failed to read stats history: " + e.getMessage(), address);
+        }
+    }
+
+    private void startStatsHistory(int port) {
+        try {
+            statsHistory = new StatsHistory(Paths.get(ServerConfig.STATS_HISTORY_PREFIX + port + ".bin"), trafficMonitor);
+            statsHistory.start();
+        } catch (IOException e) {
+            System.err.println("Stats history disabled: " + e.getMessage());
+        }
+    }
+
     // ================== TRAJTIMI I KOMANDAVE /list, /read, ... ==================
     private String handleCommandFromClient(ClientSession session, String commandLine) {
         // Këtu mund ta thërrasësh FileCommandHandler
@@ -210,43 +420,159 @@ public class UDPServer {
         }
 
         // Shembull kontrolli për admin only:
-        if (commandLine.startsWith("/delete") || commandLine.startsWith("/upload")) {
+        if (commandLine.startsWith("/delete") || commandLine.startsWith("/upload")
+                || commandLine.startsWith(ServerConfig.CMD_PATCH)) {
             if (session.getPermission() != ADMIN) {
                 return "ERROR: You do not have permission to execute this command.";
             }
         }
 
         String role = session.getPermission().name();
-        return fileCommandHandler.handle(commandLine, role);
+        return fileCommandHandler.handle(commandLine, role, session.getDatagramLimit());
+    }
+
+    // ================== BATCH ==================
+    // leximet e njepasnjeshme ekzekutohen paralelisht; çdo ndryshim (upload/delete/...) eshte barriere
+    // dhe ekzekutohet vetem, ne rendin e kerkeses
+    private void handleBatch(ClientSession session, String message) {
+        List<String> commands = BatchProtocol.parseRequest(message);
+        if (commands.isEmpty() || commands.size() > ServerConfig.BATCH_MAX_COMMANDS) {
+            sendString("ERR Batch must contain 1.." + ServerConfig.BATCH_MAX_COMMANDS + " commands", session.getAddress());
+            return;
+        }
+        String[] results = new String[commands.size()];
+        int start = 0;
+        while (start < commands.size()) {
+            if (isMutation(commands.get(start))) {
+                results[start] = executeBatchCommand(session, commands.get(start));
+                start++;
+                continue;
+            }
+            int end = start;
+            while (end < commands.size() && !isMutation(commands.get(end))) {
+                end++;
+            }
+            IntStream.range(start, end).parallel()
+                    .forEach(i -> results[i] = executeBatchCommand(session, commands.get(i)));
+            start = end;
+        }
+        int maxBytes = Math.min(ServerConfig.BATCH_MAX_RESPONSE_BYTES,
+                session.getDatagramLimit() - ServerConfig.DATAGRAM_HEADER_RESERVE);
+        for (String datagram : BatchProtocol.encodeResults(List.of(results), maxBytes)) {
+            sendString(datagram, session.getAddress());
+        }
+    }
+
+    private String executeBatchCommand(ClientSession session, String command) {
+        if (!command.startsWith("/")) {
+            return "ERR Only /commands are allowed in a batch";
+        }
+        return handleCommandFromClient(session, command);
+    }
+
+    private static boolean isMutation(String command) {
+        return command.startsWith(ServerConfig.CMD_UPLOAD) || command.startsWith(ServerConfig.CMD_DELETE)
+                || command.startsWith(ServerConfig.CMD_PATCH) || command.startsWith(ServerConfig.CMD_DOWNLOAD);
     }
 
     // ================== LOG I MESAZHEVE ==================
     private void logMessage(ClientSession session, String message) {
-        File dir = new File(Constants.LOGS_DIR);
-        if (!dir.exists()) {
-            dir.mkdirs();
+        if (messageLog != null) {
+            messageLog.append(session.getClientId(), String.valueOf(session.getAddress()), message);
         }
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(Constants.MSG_LOG_FILE, true))) {
-            writer.write(Instant.now() + " [" + session.getClientId() + "@" + session.getAddress() + "]: " + message);
-            writer.newLine();
+    }
+
+    // LOGS <clientId> [<dritarja> | <from ISO> <to ISO>]
+    private void handleLogsCommand(String message, SocketAddress address) {
+        String[] parts = message.trim().split("\\s+");
+        if (parts.length < 2 || parts.length > 4 || messageLog == null) {
+            sendString("ERR Usage: " + ServerConfig.CMD_LOGS + " <clientId> [<n>s|m|h|d | <from ISO> <to ISO>]", address);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long from;
+        long to = now;
+        try {
+            if (parts.length == 4) {
+                from = Instant.parse(parts[2]).toEpochMilli();
+                to = Instant.parse(parts[3]).toEpochMilli();
+            } else {
+                long window = StatsHistory.parseWindow(parts.length == 3 ? parts[2] : "1h");
+                if (window <= 0) {
+                    sendString("ERR Invalid window: " + parts[2], address);
+                    return;
+                }
+                from = now - window;
+            }
+            sendString(messageLog.query(parts[1], from, to), address);
+        } catch (DateTimeParseException e) {
+            sendString("ERR Invalid timestamp (expected e.g. 2026-01-01T10:00:00Z)", address);
         } catch (IOException e) {
-            System.err.println("Failed to log message: " + e.getMessage());
+            sendString("ERR Failed to read logs: " + e.getMessage(), address);
         }
     }
 
     // ================== DERGIMI I PERGJIGJEVE ==================
+    // pergjigje e kerkeses qe po trajtohet ne kete thread: mban id-ne e kerkeses
     private void sendString(String response, SocketAddress address) {
-        byte[] data = response.getBytes(StandardCharsets.UTF_8);
-        DatagramPacket packet = new DatagramPacket(data, data.length, (InetSocketAddress) address);
+        List<String> log = replyLog.get();
+        if (log != null) {
+            log.add(response);
+        }
+        String id = replyId.get();
+        String datagram = id != null ? RequestEnvelope.wrap(id, response) : response;
+        // sesioni i kerkeses aktuale; pa sesion (SERVER BUSY) pergjigjja nuk kalon nga pacing
+        ClientSession session = replySession.get();
+        enqueue(datagram.getBytes(StandardCharsets.UTF_8), address,
+                session != null && session.getAddress().equals(address) ? session : null, false);
+    }
+
+    // mesazhe qe nuk jane pergjigje e nje kerkese (EVENT, REPL, REPL_ACK): pa zarf dhe pa pacing;
+    // askush nuk i ritransmeton, prandaj OutboundSender nuk i hedh kur rradha eshte plot
+    private void sendPush(String message, SocketAddress address, ClientSession session) {
+        enqueue(message.getBytes(StandardCharsets.UTF_8), address, session, true);
+    }
+
+    private void sendToPeer(String message, SocketAddress peer) {
+        sendPush(message, peer, null);
+    }
+
+    private void enqueue(byte[] data, SocketAddress address, ClientSession session, boolean push) {
+        ServerEvents.SendEvent event = new ServerEvents.SendEvent();
+        event.begin();
+        if (push) {
+            outboundSender.submitPush(data, address, session);
+        } else {
+            pacedSender.send(data, address, session);
+        }
+        if (event.shouldCommit()) {
+            event.client = String.valueOf(address);
+            event.bytes = data.length;
+            event.commit();
+        }
+    }
+
+    // thirret nga PacedSender kur destinacioni ka token; shkrimi ne rrjet behet nga OutboundSender
+    private void transmit(byte[] data, SocketAddress address, ClientSession session) {
+        outboundSender.submit(data, address, session);
+    }
+
+    // ================== JFR ==================
+    // -Dudp.jfr=<file> (ose UDP_JFR): regjistrim i vazhdueshem me ngjarjet e serverit, shkruhet kur del JVM-ja
+    private void startFlightRecording() {
+        String file = ServerConfig.resolveJfrFile();
+        if (file == null) {
+            return;
+        }
         try {
-            socket.send(packet);
-            trafficMonitor.addBytesSent(data.length);
-            ClientSession session = sessions.get(address);
-            if (session != null) {
-                session.addBytesSent(data.length);
+            Path destination = Paths.get(file).toAbsolutePath();
+            if (destination.getParent() != null) {
+                Files.createDirectories(destination.getParent());
             }
-        } catch (IOException e) {
-            System.err.println("Error sending response to " + address + ": " + e.getMessage());
+            ServerEvents.startRecording(destination);
+            System.out.println("JFR recording started, dumped to " + destination + " on exit");
+        } catch (Exception e) {
+            System.err.println("Failed to start JFR recording: " + e.getMessage());
         }
     }
 
@@ -260,9 +586,11 @@ public class UDPServer {
                         ClientSession session = entry.getValue();
                         if (now - session.getLastActive() > Constants.CLIENT_TIMEOUT_MS) {
                             System.out.println("Client timed out and removed: " + session);
+                            ServerEvents.session("expired", session);
                             removeSession(entry.getKey());
                         }
                     }
+                    pacedSender.pruneIdle(Constants.CLIENT_TIMEOUT_MS);
 
                     Thread.sleep(5000); // kontrollo çdo 5 sekonda
                 } catch (InterruptedException e) {
@@ -275,6 +603,84 @@ public class UDPServer {
         t.start();
     }
 
+    // sipas portit, si historiku dhe snapshot-i: nyjet ne te njejtin host nuk ndajne segmentet dhe indekset
+    private static MessageLog openMessageLog(int port) {
+        try {
+            return new MessageLog(Paths.get(ServerConfig.MSG_LOG_PREFIX + port + ".log"));
+        } catch (IOException e) {
+            System.err.println("Message log disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ================== WARM RESTART ==================
+    private void restoreState(int port) {
+        stateFile = Paths.get(ServerConfig.STATE_FILE_PREFIX + port + ".bin");
+        try {
+            int restored = StateSnapshot.load(stateFile, sessions, trafficMonitor);
+            activeClientCount.set(sessions.size());
+            if (restored > 0) {
+                System.out.println("Restored " + restored + " client session(s) from " + stateFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to restore server state: " + e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveState, "state-snapshot-on-exit"));
+    }
+
+    private void startStateSnapshotter() {
+        Thread t = new Thread(() -> {
+            while (running) {
+                try {
+                    Thread.sleep(ServerConfig.STATE_SNAPSHOT_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                saveState();
+            }
+        }, "state-snapshot");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private synchronized void saveState() {
+        if (stateFile == null) {
+            return;
+        }
+        try {
+            StateSnapshot.save(stateFile, sessions, trafficMonitor);
+        } catch (IOException e) {
+            System.err.println("Failed to save server state: " + e.getMessage());
+        }
+    }
+
+    // ================== KLASTERI ==================
+    private void startCluster(int port) {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (InetSocketAddress node : ServerConfig.resolveClusterNodes()) {
+            if (!isSelf(node, port)) {
+                peers.add(node);
+            }
+        }
+        replicator = new ClusterReplicator(peers, this::sendToPeer, ServerConfig.resolveClusterSecret());
+        fileCommandHandler.setMutationListener(replicator::onMutation);
+        replicator.start();
+    }
+
+    private boolean isSelf(InetSocketAddress node, int port) {
+        if (node.getPort() != port || node.getAddress() == null) {
+            return false;
+        }
+        InetAddress address = node.getAddress();
+        try {
+            return address.isLoopbackAddress() || address.isAnyLocalAddress()
+                    || NetworkInterface.getByInetAddress(address) != null;
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
     // ================== HINT PER STATS NGA KONZOLA ==================
     private void startConsoleHint() {
         // thjesht për me tregu se ekziston komanda STATS
@@ -284,6 +690,8 @@ public class UDPServer {
         ClientSession removed = sessions.remove(address);
         if (removed != null) {
             activeClientCount.decrementAndGet();
+            pacedSender.forget(address);
+            fileWatcher.unsubscribe(address);
         }
     }
     private record HelloPayload(String clientId, ClientSession.Permission role) { }
@@ -292,7 +700,7 @@ public class UDPServer {
         UDPServer server = new UDPServer();
         try {
             server.start();
-        } catch (SocketException e) {
+        } catch (IOException e) {
             System.err.println("Failed to start UDP server: " + e.getMessage());
         }
     }
@@ -0,0 +1,299 @@
+package tools;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proxy UDP lokal qe fut humbje, vonese, jitter, rirenditje, dyfishim dhe kufi bandwidth-i
+ * mes klienteve dhe UDPServer, me vendime te percaktuara nga seed-i (e njejta seri paketash
+ * merr te njejtat vendime ne çdo ekzekutim).
+ *
+ *   java tools.ImpairmentProxy listen=6000 target=127.0.0.1:5000 profile=wifi seed=42 [loss=0.05 ...]
+ *   java -Dudp.server.port=6000 client.AdminClient
+ *
+ * Çdo klient merr socket-in e vet drejt serverit, qe serveri t'i shohe si klientë te veçante.
+ */
+public class ImpairmentProxy {
+
+    // ================== PROFILET ==================
+    public record Profile(double loss, long delayMs, long jitterMs, double reorder, double duplicate, long rateBytesPerSec) {
+    }
+
+    private static final Map<String, Profile> PROFILES = new LinkedHashMap<>();
+
+    static {
+        PROFILES.put("clean", new Profile(0, 0, 0, 0, 0, 0));
+        PROFILES.put("lan", new Profile(0.001, 1, 1, 0, 0, 12_500_000));
+        PROFILES.put("wifi", new Profile(0.02, 5, 10, 0.01, 0.005, 2_500_000));
+        PROFILES.put("lossy", new Profile(0.10, 20, 20, 0.05, 0.01, 1_000_000));
+        PROFILES.put("slow", new Profile(0.01, 100, 30, 0.01, 0, 32_000));
+    }
+
+    private static final long REORDER_EXTRA_MS = 15;
+    private static final long DUPLICATE_GAP_MS = 1;
+
+    private final DatagramSocket listenSocket;
+    private final InetSocketAddress target;
+    private final Profile profile;
+    private final long seed;
+    private final int maxDatagram; // 0 = pa kufi; me te medhenjte hidhen si ne nje rruge me MTU te vogel (black hole)
+    private final Map<SocketAddress, Flow> flows = new ConcurrentHashMap<>();
+    private final AtomicInteger flowCounter = new AtomicInteger();
+    private final DelayQueue<Scheduled> scheduled = new DelayQueue<>();
+    private final Direction upstream = new Direction("client->server");
+    private final Direction downstream = new Direction("server->client");
+
+    public ImpairmentProxy(int listenPort, InetSocketAddress target, Profile profile, long seed, int maxDatagram)
+            throws SocketException {
+        this.listenSocket = new DatagramSocket(listenPort);
+        this.target = target;
+        this.profile = profile;
+        this.seed = seed;
+        this.maxDatagram = maxDatagram;
+    }
+
+    public void run(long statsIntervalMs) {
+        Thread delivery = new Thread(this::deliveryLoop, "proxy-delivery");
+        delivery.setDaemon(true);
+        delivery.start();
+        if (statsIntervalMs > 0) {
+            Thread stats = new Thread(() -> {
+                while (true) {
+                    try {
+                        Thread.sleep(statsIntervalMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    System.out.print(buildStats());
+                }
+            }, "proxy-stats");
+            stats.setDaemon(true);
+            stats.start();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(buildStats())));
+
+        byte[] buffer = new byte[65_535];
+        while (true) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                listenSocket.receive(packet);
+            } catch (IOException e) {
+                System.err.println("Proxy receive failed: " + e.getMessage());
+                return;
+            }
+            SocketAddress client = packet.getSocketAddress();
+            Flow flow = flows.computeIfAbsent(client, this::openFlow);
+            if (flow == null) {
+                continue;
+            }
+            byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
+            impair(data, flow.upstreamLink, upstream, flow.socket, target);
+        }
+    }
+
+    // ================== RRJEDHAT ==================
+    // çdo klient: socket i vete drejt serverit dhe RNG e vete per secilin drejtim
+    private final class Flow {
+        private final DatagramSocket socket;
+        private final Link upstreamLink;
+        private final Link downstreamLink;
+
+        private Flow(SocketAddress client, int index) throws SocketException {
+            this.socket = new DatagramSocket();
+            this.upstreamLink = new Link(new Random(seed * 31 + index * 2L));
+            this.downstreamLink = new Link(new Random(seed * 31 + index * 2L + 1));
+            Thread reader = new Thread(() -> readFromServer(client), "proxy-flow-" + index);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void readFromServer(SocketAddress client) {
+            byte[] buffer = new byte[65_535];
+            while (true) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(packet);
+                } catch (IOException e) {
+                    return;
+                }
+                byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
+                impair(data, downstreamLink, downstream, listenSocket, client);
+            }
+        }
+    }
+
+    private Flow openFlow(SocketAddress client) {
+        try {
+            int index = flowCounter.getAndIncrement();
+            System.out.println("Flow " + index + ": " + client + " -> " + target);
+            return new Flow(client, index);
+        } catch (SocketException e) {
+            System.err.println("Cannot open upstream socket for " + client + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ================== DEMTIMET ==================
+    // gjendja e nje drejtimi te nje rrjedhe: RNG dhe koha kur linja e kufizuar lirohet
+    private static final class Link {
+        private final Random random;
+        private long nextFreeNanos;
+
+        private Link(Random random) {
+            this.random = random;
+        }
+    }
+
+    private void impair(byte[] data, Link link, Direction direction, DatagramSocket out, SocketAddress destination) {
+        long now = System.nanoTime();
+        direction.received.incrementAndGet();
+        direction.bytesIn.addAndGet(data.length);
+        if (maxDatagram > 0 && data.length > maxDatagram) {
+            direction.oversize.incrementAndGet();
+            return;
+        }
+        long departure;
+        boolean duplicate;
+        synchronized (link) {
+            // vendimet merren gjithmone ne te njejtin rend, qe seed-i te jape te njejtat rezultate
+            boolean drop = link.random.nextDouble() < profile.loss();
+            double jitter = (link.random.nextDouble() * 2 - 1) * profile.jitterMs();
+            boolean reorder = link.random.nextDouble() < profile.reorder();
+            duplicate = link.random.nextDouble() < profile.duplicate();
+            if (drop) {
+                direction.dropped.incrementAndGet();
+                return;
+            }
+            long delayNanos = (long) (Math.max(0, profile.delayMs() + jitter) * 1_000_000L);
+            if (reorder) {
+                delayNanos += REORDER_EXTRA_MS * 1_000_000L; // paketat pas saj e kalojne
+                direction.reordered.incrementAndGet();
+            }
+            departure = now + delayNanos;
+            if (profile.rateBytesPerSec() > 0) {
+                departure = Math.max(departure, link.nextFreeNanos);
+                link.nextFreeNanos = departure + data.length * 1_000_000_000L / profile.rateBytesPerSec();
+            }
+        }
+        scheduled.add(new Scheduled(data, departure, out, destination, direction));
+        if (duplicate) {
+            direction.duplicated.incrementAndGet();
+            scheduled.add(new Scheduled(data, departure + DUPLICATE_GAP_MS * 1_000_000L, out, destination, direction));
+        }
+    }
+
+    private void deliveryLoop() {
+        while (true) {
+            Scheduled next;
+            try {
+                next = scheduled.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                next.socket.send(new DatagramPacket(next.data, next.data.length, next.destination));
+                next.direction.delivered.incrementAndGet();
+                next.direction.bytesOut.addAndGet(next.data.length);
+            } catch (IOException e) {
+                System.err.println("Proxy send failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private record Scheduled(byte[] data, long dueNanos, DatagramSocket socket, SocketAddress destination,
+                             Direction direction) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Scheduled) other).dueNanos);
+        }
+    }
+
+    // ================== STATISTIKAT ==================
+    private static final class Direction {
+        private final String name;
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong duplicated = new AtomicLong();
+        private final AtomicLong reordered = new AtomicLong();
+        private final AtomicLong oversize = new AtomicLong();
+        private final AtomicLong bytesIn = new AtomicLong();
+        private final AtomicLong bytesOut = new AtomicLong();
+
+        private Direction(String name) {
+            this.name = name;
+        }
+
+        private String format() {
+            return String.format(Locale.ROOT, "  %-15s in %d (%d B), out %d (%d B), dropped %d, duplicated %d, reordered %d, oversize %d%n",
+                    name, received.get(), bytesIn.get(), delivered.get(), bytesOut.get(),
+                    dropped.get(), duplicated.get(), reordered.get(), oversize.get());
+        }
+    }
+
+    public String buildStats() {
+        return "==== PROXY STATS (" + flows.size() + " flow(s), queued " + scheduled.size() + ") ====\n"
+                + upstream.format() + downstream.format();
+    }
+
+    // ================== MAIN ==================
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                printUsage();
+                return;
+            }
+            options.put(arg.substring(0, eq).toLowerCase(Locale.ROOT), arg.substring(eq + 1));
+        }
+        Profile base = PROFILES.get(options.getOrDefault("profile", "clean"));
+        if (base == null) {
+            printUsage();
+            return;
+        }
+        Profile profile = new Profile(
+                Double.parseDouble(options.getOrDefault("loss", String.valueOf(base.loss()))),
+                Long.parseLong(options.getOrDefault("delay", String.valueOf(base.delayMs()))),
+                Long.parseLong(options.getOrDefault("jitter", String.valueOf(base.jitterMs()))),
+                Double.parseDouble(options.getOrDefault("reorder", String.valueOf(base.reorder()))),
+                Double.parseDouble(options.getOrDefault("duplicate", String.valueOf(base.duplicate()))),
+                Long.parseLong(options.getOrDefault("rate", String.valueOf(base.rateBytesPerSec()))));
+        int listenPort = Integer.parseInt(options.getOrDefault("listen", "6000"));
+        String[] target = options.getOrDefault("target", "127.0.0.1:5000").split(":");
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        long statsMs = Long.parseLong(options.getOrDefault("stats", "5000"));
+        int mtu = Integer.parseInt(options.getOrDefault("mtu", "0"));
+
+        System.out.println("Proxy :" + listenPort + " -> " + target[0] + ":" + target[1] + " seed=" + seed + " " + profile
+                + (mtu > 0 ? " mtu=" + mtu : ""));
+        new ImpairmentProxy(listenPort, new InetSocketAddress(target[0], Integer.parseInt(target[1])), profile, seed, mtu)
+                .run(statsMs);
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java tools.ImpairmentProxy [listen=6000] [target=127.0.0.1:5000] [seed=1] [stats=5000]");
+        System.out.println("       [profile=" + String.join("|", PROFILES.keySet()) + "] [loss=0..1] [delay=ms] [jitter=ms]");
+        System.out.println("       [reorder=0..1] [duplicate=0..1] [rate=bytes/s, 0 = pa kufi] [mtu=bajte, 0 = pa kufi]");
+    }
+}
@@ -0,0 +1,32 @@
+import client.ConsistentHashRingTest;
+import client.PathMtuTest;
+import client.RetransmitTimerTest;
+import server.BatchProtocolTest;
+import server.BlobStoreTest;
+import server.DeltaSyncTest;
+import server.FecCodecTest;
+import server.MessageLogTest;
+import server.ReplayCacheTest;
+import server.StateSnapshotTest;
+
+/**
+ * Teste pa framework per pjeset e protokollit dhe te serverit. Nga rrenja e projektit:
+ *   javac -encoding UTF-8 -d out $(find src test -name '*.java') && java -cp out AllTests
+ */
+public class AllTests {
+
+    public static void main(String[] args) throws Exception {
+        int failures = DeltaSyncTest.run()
+                + ConsistentHashRingTest.run()
+                + StateSnapshotTest.run()
+                + MessageLogTest.run()
+                + BatchProtocolTest.run()
+                + FecCodecTest.run()
+                + ReplayCacheTest.run()
+                + BlobStoreTest.run()
+                + RetransmitTimerTest.run()
+                + PathMtuTest.run();
+        System.out.println(failures == 0 ? "All tests passed." : failures + " failure(s).");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
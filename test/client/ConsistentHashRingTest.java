@@ -0,0 +1,70 @@
+package client;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unaza duhet te jete e qendrueshme: i njejti emer shkon gjithmone te e njejta nyje
+ * dhe nyja e re merr vetem file-t qe zhvendosen tek ajo.
+ */
+public class ConsistentHashRingTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() {
+        failures = 0;
+        List<InetSocketAddress> nodes = new ArrayList<>(List.of(
+                new InetSocketAddress("127.0.0.1", 5000),
+                new InetSocketAddress("127.0.0.1", 5001),
+                new InetSocketAddress("127.0.0.1", 5002)));
+        ConsistentHashRing ring = new ConsistentHashRing(nodes);
+        ConsistentHashRing same = new ConsistentHashRing(List.of(nodes.get(2), nodes.get(0), nodes.get(1)));
+
+        Map<String, InetSocketAddress> before = new HashMap<>();
+        Map<InetSocketAddress, Integer> load = new HashMap<>();
+        for (int i = 0; i < 3_000; i++) {
+            String name = "file_" + i + ".txt";
+            InetSocketAddress node = ring.nodeFor(name);
+            before.put(name, node);
+            load.merge(node, 1, Integer::sum);
+            check(node.equals(same.nodeFor(name)), "rendi i nyjeve nuk e ndryshon caktimin: " + name);
+        }
+        for (InetSocketAddress node : nodes) {
+            int share = load.getOrDefault(node, 0);
+            check(share > 500 && share < 1_500, "ngarkesa e " + node + " eshte e balancuar (" + share + ")");
+        }
+
+        InetSocketAddress added = new InetSocketAddress("127.0.0.1", 5003);
+        nodes.add(added);
+        ConsistentHashRing grown = new ConsistentHashRing(nodes);
+        int moved = 0;
+        for (Map.Entry<String, InetSocketAddress> entry : before.entrySet()) {
+            InetSocketAddress now = grown.nodeFor(entry.getKey());
+            if (!now.equals(entry.getValue())) {
+                moved++;
+                check(now.equals(added), entry.getKey() + " levizi vetem te nyja e re");
+            }
+        }
+        check(moved > 300 && moved < 1_300, "rreth 1/4 e file-ve zhvendosen (" + moved + ")");
+
+        ConsistentHashRing empty = new ConsistentHashRing(List.of());
+        check(empty.isEmpty() && empty.nodeFor("a.txt") == null, "unaza bosh nuk kthen nyje");
+
+        System.out.println("ConsistentHashRingTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
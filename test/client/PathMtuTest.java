@@ -0,0 +1,64 @@
+package client;
+
+import static server.ServerConfig.*;
+
+/**
+ * Niveli i datagrameve rritet vetem pas nje prove pa humbje, kthehet poshte pas humbjeve rresht
+ * dhe provat ndalen perkohesisht pas deshtimeve te perseritura.
+ */
+public class PathMtuTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() {
+        failures = 0;
+        PathMtu mtu = new PathMtu();
+        check(mtu.size() == DATAGRAM_MIN && mtu.nextSize() == DATAGRAM_MIN, "fillon nga madhesia e sigurt");
+
+        int probe = probeAfterCleanReplies(mtu);
+        check(probe == 1_472 && mtu.nextSize() == DATAGRAM_MIN, "prova niset nje here pas pergjigjeve pa humbje");
+        mtu.onReply(probe, false);
+        check(mtu.size() == 1_472, "prova e suksesshme konfirmon nivelin");
+
+        mtu.onReply(DATAGRAM_MIN, true);
+        mtu.onReply(DATAGRAM_MIN, true);
+        mtu.onReply(DATAGRAM_MIN, true);
+        check(mtu.size() == 1_472, "humbjet e kerkesave te vjetra injorohen");
+
+        mtu.onReply(1_472, true);
+        mtu.onReply(1_472, true);
+        mtu.onReply(1_472, false);
+        mtu.onReply(1_472, true);
+        check(mtu.size() == 1_472, "humbjet jo rresht nuk e ulin nivelin");
+        mtu.onReply(1_472, true);
+        mtu.onReply(1_472, true);
+        check(mtu.size() == DATAGRAM_MIN, "humbjet rresht e kthejne nje nivel poshte");
+
+        mtu.onReply(probeAfterCleanReplies(mtu), true);
+        mtu.onReply(probeAfterCleanReplies(mtu), true);
+        check(mtu.size() == DATAGRAM_MIN && probeAfterCleanReplies(mtu) == DATAGRAM_MIN,
+                "provat ndalen pas deshtimeve te perseritura");
+        check(mtu.describe().contains("provat te ndaluara"), "statistikat: " + mtu.describe());
+
+        System.out.println("PathMtuTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static int probeAfterCleanReplies(PathMtu mtu) {
+        for (int i = 0; i < 16; i++) {
+            mtu.onReply(mtu.size(), false);
+        }
+        return mtu.nextSize();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
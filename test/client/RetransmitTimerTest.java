@@ -0,0 +1,53 @@
+package client;
+
+import static server.ServerConfig.*;
+
+/**
+ * RTO ndjek RTT-ne e matur brenda kufijve, dyfishohet pas timeout-it dhe rikthehet me mostren e radhes.
+ */
+public class RetransmitTimerTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() {
+        failures = 0;
+        RetransmitTimer timer = new RetransmitTimer();
+        check(timer.rtoMs() == RTO_INITIAL_MS, "RTO para mostres se pare");
+
+        // mostra e pare: srtt=40, rttvar=20 -> 40 + 4*20
+        timer.onSample(40_000_000L);
+        check(timer.rtoMs() == 120, "RTO pas mostres se pare (" + timer.rtoMs() + ")");
+        for (int i = 0; i < 50; i++) {
+            timer.onSample(10_000_000L);
+        }
+        check(timer.rtoMs() == RTO_MIN_MS, "RTT e qendrueshme bie deri te minimumi (" + timer.rtoMs() + ")");
+        check(timer.followUpMs() == RTO_FOLLOW_UP_MIN_MS, "pritja per pjeset e tjera ka minimum");
+
+        timer.onTimeout();
+        check(timer.rtoMs() == RTO_MIN_MS * 2, "timeout-i e dyfishon RTO");
+        for (int i = 0; i < 20; i++) {
+            timer.onTimeout();
+        }
+        check(timer.rtoMs() == RTO_MAX_MS && timer.followUpMs() == RTO_MAX_MS, "backoff-i ka maksimum");
+
+        timer.onSample(40_000_000L);
+        check(timer.rtoMs() < RTO_MAX_MS, "mostra e re rikthen RTO");
+        timer.onSample(60_000_000_000L);
+        check(timer.rtoMs() == RTO_MAX_MS, "RTT shume e madhe kufizohet");
+        check(timer.describe().contains("ritransmetime 21"), "statistikat: " + timer.describe());
+
+        System.out.println("RetransmitTimerTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kerkesat BATCH ndahen sipas kufirit te bajteve dhe te komandave; rezultatet rindertohen nga pjeset sipas indeksit.
+ */
+public class BatchProtocolTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() {
+        failures = 0;
+        requestsRoundTrip();
+        resultsRoundTrip();
+        System.out.println("BatchProtocolTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static void requestsRoundTrip() {
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            commands.add(ServerConfig.CMD_INFO + " file_" + i + ".txt");
+        }
+        commands.add(ServerConfig.CMD_READ + " \"emër me hapësira.txt\"");
+        List<String> requests = BatchProtocol.encodeRequests(commands, ServerConfig.BUFFER_SIZE);
+        List<String> decoded = new ArrayList<>();
+        for (String request : requests) {
+            check(request.getBytes(StandardCharsets.UTF_8).length <= ServerConfig.BUFFER_SIZE, "kerkesa hyn ne BUFFER_SIZE");
+            List<String> part = BatchProtocol.parseRequest(request);
+            check(part.size() <= ServerConfig.BATCH_MAX_COMMANDS, "jo me shume se BATCH_MAX_COMMANDS komanda");
+            decoded.addAll(part);
+        }
+        check(requests.size() > 1, "600 komanda ndahen ne disa kerkesa");
+        check(decoded.equals(commands), "komandat lexohen ne te njejtin rend");
+
+        List<String> multiline = BatchProtocol.parseRequest(BatchProtocol.encodeRequests(List.of("/info a\nb"), 4_096).get(0));
+        check(multiline.equals(List.of("/info a b")), "rreshti i ri brenda komandes nuk krijon komande te re");
+    }
+
+    private static void resultsRoundTrip() {
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            results.add(i % 3 == 0 ? "DATA\nrreshti 1\nrreshti 2 ç ë €" : "OK " + "x".repeat(i * 7));
+        }
+        results.add("");
+        int maxBytes = 500;
+        List<String> datagrams = BatchProtocol.encodeResults(results, maxBytes);
+        String[] rebuilt = new String[results.size()];
+        for (int i = 0; i < datagrams.size(); i++) {
+            BatchProtocol.Part part = BatchProtocol.parseResultPart(datagrams.get(i));
+            check(part != null && part.part() == i + 1 && part.parts() == datagrams.size(), "numeruesi i pjeses " + i);
+            if (part == null) {
+                continue;
+            }
+            for (BatchProtocol.Frame frame : part.frames()) {
+                check(rebuilt[frame.index()] == null, "rezultati " + frame.index() + " vetem ne nje pjese");
+                rebuilt[frame.index()] = frame.result();
+            }
+        }
+        check(datagrams.size() > 1, "rezultatet ndahen ne disa datagrame");
+        check(List.of(rebuilt).equals(results), "rezultatet rindertohen te plota");
+        check(BatchProtocol.parseResultPart("DATA\nx") == null, "datagramet e tjera injorohen");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
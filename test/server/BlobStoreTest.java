@@ -0,0 +1,83 @@
+package server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+
+/**
+ * E njejta permbajtje ruhet nje here dhe ndahet me hard link; ndryshimi i nje file-i nuk prek
+ * kopjet e tjera, blob-i fshihet me referencen e fundit dhe numerimi rikthehet pas restartit.
+ */
+public class BlobStoreTest {
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() throws IOException {
+        failures = 0;
+        Path dir = Files.createTempDirectory("blob-test");
+        try {
+            sharesAndReleases(dir.resolve("blobs"), dir.resolve("files"));
+        } finally {
+            try (var files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        System.out.println("BlobStoreTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static void sharesAndReleases(Path blobs, Path files) throws IOException {
+        BlobStore store = new BlobStore(blobs.toString());
+        byte[] shared = "permbajtje e perbashket".getBytes(StandardCharsets.UTF_8);
+        Path a = files.resolve("a.txt");
+        Path b = files.resolve("sub").resolve("b.txt");
+
+        String hash = store.put(a, shared);
+        check(hash.equals(BlobStore.sha256(shared)) && store.put(b, shared).equals(hash), "hash-i i permbajtjes");
+        check(store.refCount(hash) == 2 && Files.isSameFile(a, b), "kopjet ndajne te njejtin inode");
+        check(store.read(b, () -> new String(Files.readAllBytes(b), StandardCharsets.UTF_8))
+                .equals("permbajtje e perbashket"), "leximi nen lock");
+        if (Files.getFileStore(a).supportsFileAttributeView("posix")) {
+            check(PosixFilePermissions.toString(Files.getPosixFilePermissions(a)).equals("r--r--r--"),
+                    "blob-i vuloset read-only");
+        }
+
+        store.put(a, "e re".getBytes(StandardCharsets.UTF_8));
+        check(new String(Files.readAllBytes(b), StandardCharsets.UTF_8).equals("permbajtje e perbashket")
+                && !Files.isSameFile(a, b), "shkrimi i ri nuk prek kopjen tjeter");
+        check(store.refCount(hash) == 1 && store.hashOf(b).equals(hash), "referenca e vjeter lirohet");
+
+        Path c = files.resolve("c.txt");
+        check(store.linkExisting(c, hash) && Files.isSameFile(b, c) && store.refCount(hash) == 2,
+                "lidhja me blob ekzistues");
+        check(!store.linkExisting(files.resolve("d.txt"), BlobStore.sha256(new byte[0])), "blob-i qe mungon");
+
+        store.delete(c);
+        check(!Files.exists(c) && store.refCount(hash) == 1 && Files.exists(blobs.resolve(hash)),
+                "fshirja liron vetem referencen e saj");
+
+        Files.writeString(blobs.resolve(BlobStore.sha256(new byte[] {1})), "jetim");
+        BlobStore reopened = new BlobStore(blobs.toString());
+        check(reopened.refCount(hash) == 1 && hash.equals(reopened.hashOf(b)), "indeksi rikthehet pas restartit");
+        check(!Files.exists(blobs.resolve(BlobStore.sha256(new byte[] {1}))), "blob-et pa reference pastrohen");
+
+        reopened.delete(b);
+        check(reopened.refCount(hash) == 0 && !Files.exists(blobs.resolve(hash)), "referenca e fundit fshin blob-in");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Nenshkrimi -> delta -> patch duhet te rindertoje file-in e ri bajt per bajt, duke riperdorur blloqet e pandryshuara.
+ */
+public class DeltaSyncTest {
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() throws IOException {
+        failures = 0;
+        int blockSize = ServerConfig.DELTA_BLOCK_SIZE;
+        byte[] base = new byte[10_000];
+        new Random(26).nextBytes(base);
+
+        // futje ne mes (zhvendos blloqet pas saj) dhe ndryshim ne fund
+        byte[] target = new byte[base.length + 100];
+        System.arraycopy(base, 0, target, 0, 4_000);
+        Arrays.fill(target, 4_000, 4_100, (byte) 7);
+        System.arraycopy(base, 4_000, target, 4_100, base.length - 4_000);
+        target[target.length - 10] ^= 0x55;
+
+        DeltaSync.PatchResult patched = roundTrip(base, target, blockSize);
+        check(Arrays.equals(patched.data(), target), "patch-i rindërton file-in e ri");
+        check(patched.copiedBlocks() > 30, "blloqet e zhvendosura riperdoren (" + patched.copiedBlocks() + ")");
+        check(patched.literalBytes() < 1_000, "vetem ndryshimet dergohen si literale (" + patched.literalBytes() + ")");
+
+        int deltaBytes = DeltaSync.computeDelta(target, DeltaSync.signature(base, blockSize)).length;
+        check(deltaBytes < patched.literalBytes() + 80, "blloqet e njepasnjeshme kopjohen me nje op (" + deltaBytes + ")");
+        check(Arrays.equals(roundTrip(base, base.clone(), blockSize).data(), base), "file i pandryshuar");
+        check(Arrays.equals(roundTrip(new byte[0], target, blockSize).data(), target), "pa version te meparshem");
+        check(roundTrip(base, new byte[0], blockSize).data().length == 0, "file i zbrazur");
+
+        byte[] delta = DeltaSync.computeDelta(target, DeltaSync.signature(base, blockSize));
+        byte[] wrongBase = base.clone();
+        wrongBase[0] ^= 1;
+        try {
+            DeltaSync.applyDelta(wrongBase, blockSize, delta);
+            check(false, "delta mbi baze tjeter duhet te refuzohet");
+        } catch (IOException expected) {
+            // md5 i rezultatit nuk perputhet
+        }
+
+        rejectsOversizedLength(base, blockSize);
+        pagedSignatureMatchesWhole(target, blockSize);
+
+        System.out.println("DeltaSyncTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    // nje delta e vogel qe deklaron gjatesi shume me te madhe se sa mund te prodhoje refuzohet para alokimit
+    private static void rejectsOversizedLength(byte[] base, int blockSize) throws IOException {
+        ByteBuffer crafted = ByteBuffer.allocate(4 + 16 + 5);
+        crafted.putInt(Integer.MAX_VALUE - 8).put(new byte[16]).put((byte) 0).putInt(0);
+        try {
+            DeltaSync.applyDelta(base, blockSize, crafted.array());
+            check(false, "gjatesia e deklaruar pertej asaj qe prodhon delta duhet te refuzohet");
+        } catch (IOException expected) {
+            // nuk alokohet buffer-i
+        }
+    }
+
+    // faqet e /signature (start= / next=) bashkohen ne te njejtat blloqe si nenshkrimi i plote
+    private static void pagedSignatureMatchesWhole(byte[] data, int blockSize) {
+        DeltaSync.Signature whole = DeltaSync.signature(data, blockSize);
+        List<DeltaSync.BlockSignature> blocks = new ArrayList<>();
+        int pages = 0;
+        int start = 0;
+        while (start >= 0) {
+            DeltaSync.Signature page = DeltaSync.signature(data, blockSize, start, 7);
+            long next = (long) start + page.blocks().size();
+            String response = DeltaSync.formatSignature("file.bin", page,
+                    next * blockSize < data.length ? (int) next : -1);
+            check(response.getBytes(StandardCharsets.UTF_8).length < 7 * 53 + 100, "faqja mbetet e vogel");
+            DeltaSync.Signature parsed = DeltaSync.parseSignature(response);
+            check(parsed != null && parsed.size() == data.length, "faqja " + pages + " lexohet");
+            blocks.addAll(parsed.blocks());
+            start = DeltaSync.nextSignatureBlock(response);
+            pages++;
+        }
+        check(pages == (whole.blocks().size() + 6) / 7, "numri i faqeve (" + pages + ")");
+        check(blocks.equals(whole.blocks()), "faqet bashke japin nenshkrimin e plote");
+        check(DeltaSync.blocksPerPage(7_000, 60) == 130, "blloqe per faqe nga kufiri i bajteve");
+    }
+
+    // nenshkrimi kalon neper formatin tekst te /signature, si ne rrjet
+    private static DeltaSync.PatchResult roundTrip(byte[] base, byte[] target, int blockSize) throws IOException {
+        String response = DeltaSync.formatSignature("file.bin", DeltaSync.signature(base, blockSize));
+        DeltaSync.Signature signature = DeltaSync.parseSignature(response);
+        check(signature != null && signature.size() == base.length, "nenshkrimi lexohet pas formatimit");
+        byte[] delta = DeltaSync.computeDelta(target, signature);
+        return DeltaSync.applyDelta(base, blockSize, delta);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
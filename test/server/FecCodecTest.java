@@ -0,0 +1,78 @@
+package server;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Kodimi/dekodimi i grupeve FEC: çdo pjese e humbur (edhe e fundit, me e shkurter) rindertohet nga pariteti.
+ */
+public class FecCodecTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() {
+        failures = 0;
+        recoversEveryShardWithShortLastShard();
+        rejectsCorruptedShard();
+        System.out.println("FecCodecTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static void recoversEveryShardWithShortLastShard() {
+        int shardSize = 3_000;
+        long total = 10_000;
+        long groupOffset = 3_000;   // pjeset 3000..6000, 6000..9000, 9000..10000 (1000 bajte)
+        byte[] file = new byte[(int) total];
+        new Random(43).nextBytes(file);
+        int count = 3;
+        byte[][] shards = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            int length = FecCodec.shardLength(groupOffset, i, shardSize, total);
+            int start = (int) groupOffset + i * shardSize;
+            shards[i] = Arrays.copyOfRange(file, start, start + length);
+        }
+        check(shards[count - 1].length == 1_000, "pjesa e fundit duhet te jete 1000 bajte");
+
+        List<String> datagrams = FecCodec.encodeGroup(groupOffset, shards, shardSize, total, "0badc0de");
+        check(datagrams.size() == count + 1, "k pjese + 1 paritet");
+        FecCodec.Shard[] parsed = new FecCodec.Shard[datagrams.size()];
+        for (int i = 0; i < datagrams.size(); i++) {
+            parsed[i] = FecCodec.parse(datagrams.get(i));
+            check(parsed[i] != null && parsed[i].index() == i && parsed[i].count() == count
+                    && parsed[i].groupOffset() == groupOffset && parsed[i].total() == total
+                    && "0badc0de".equals(parsed[i].fileCrc()), "koka e pjeses " + i);
+        }
+        FecCodec.Shard parity = parsed[count];
+        check(parity.isParity() && parity.data().length == shardSize, "pariteti ka madhesine e plote te pjeses");
+
+        for (int missing = 0; missing < count; missing++) {
+            byte[][] received = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                received[i] = i == missing ? new byte[0] : parsed[i].data();
+            }
+            byte[] rebuilt = FecCodec.recover(received, parity.data(), missing, groupOffset, shardSize, total);
+            check(Arrays.equals(rebuilt, shards[missing]), "rindertimi i pjeses " + missing);
+        }
+    }
+
+    private static void rejectsCorruptedShard() {
+        byte[][] shards = {{1, 2, 3, 4}, {5, 6}};
+        String datagram = FecCodec.encodeGroup(0, shards, 4, 6, "00000000").get(0);
+        int newline = datagram.indexOf('\n');
+        String corrupted = datagram.substring(0, newline + 1) + "BQYHCA==";
+        check(FecCodec.parse(corrupted) == null, "pjesa me crc32c gabim trajtohet si e humbur");
+        check(FecCodec.parse("DATA_RANGE offset=0\nAAAA") == null, "datagramet e tjera injorohen");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Segmentet e mbyllura kompresohen me indeks dhe kerkimi i gjen mesazhet ne to dhe ne segmentin aktiv;
+ * dy log-e ne te njejtin direktorium (dy nyje ne nje host) nuk i prekin segmentet e njeri-tjetrit.
+ */
+public class MessageLogTest {
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() throws Exception {
+        failures = 0;
+        Path dir = Files.createTempDirectory("message-log-test");
+        try {
+            long start = System.currentTimeMillis() - 60_000;
+            // segment i mbyllur i nyjes 5000 qe s'u kompresua para ndalimit
+            Files.write(dir.resolve("messages_5000-" + start + ".log"), List.of(
+                    Instant.ofEpochMilli(start) + " [client1@/127.0.0.1:40001]: /list",
+                    Instant.ofEpochMilli(start + 1_000) + " [client2@/127.0.0.1:40002]: /read a.txt",
+                    Instant.ofEpochMilli(start + 2_000) + " [client1@/127.0.0.1:40001]: /info a.txt"),
+                    StandardCharsets.UTF_8);
+
+            MessageLog first = new MessageLog(dir.resolve("messages_5000.log"));
+            MessageLog second = new MessageLog(dir.resolve("messages_5001.log"));
+            first.append("client1", "/127.0.0.1:40001", "/download b.bin");
+            second.append("client1", "/127.0.0.1:40009", "/upload c.txt");
+
+            Path index = dir.resolve("messages_5000-" + start + ".idx");
+            for (int i = 0; i < 100 && !Files.exists(index); i++) {
+                Thread.sleep(50);
+            }
+            check(Files.exists(index) && Files.exists(dir.resolve("messages_5000-" + start + ".log.gz")),
+                    "segmenti i mbyllur kompresohet me indeks");
+            check(!Files.exists(dir.resolve("messages_5000-" + start + ".log")), "segmenti i pakompresuar fshihet");
+
+            String own = first.query("client1", start - 1, Long.MAX_VALUE);
+            check(own.startsWith("DATA\n3 message(s) for client1 (1 archived block(s) read)"), "kerkimi ne arkiv dhe aktiv: " + firstLine(own));
+            check(own.contains("/list") && own.contains("/info a.txt") && own.contains("/download b.bin")
+                    && !own.contains("/read a.txt") && !own.contains("/upload c.txt"), "vetem mesazhet e client1 ne kete nyje");
+
+            String other = second.query("client1", start - 1, Long.MAX_VALUE);
+            check(other.startsWith("DATA\n1 message(s) for client1 (0 archived block(s) read)"),
+                    "nyja tjeter nuk lexon segmentet e 5000: " + firstLine(other));
+
+            String window = first.query("client1", start + 500, start + 1_500);
+            check(window.startsWith("DATA\n0 message(s)"), "dritarja kohore pa mesazhe te client1");
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println("MessageLogTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static String firstLine(String response) {
+        return response.lines().skip(1).findFirst().orElse("");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package server;
+
+import java.util.List;
+
+/**
+ * Kerkesa e ritransmetuar merr pergjigjen e ruajtur; pergjigjet e medha ruhen vetem si TOO_LARGE
+ * per komandat qe ndryshojne gjendjen, dhe memoria kufizohet ne hyrje dhe bajte per sesion.
+ */
+public class ReplayCacheTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() {
+        failures = 0;
+        replaysCompletedReply();
+        oversizedReplies();
+        boundsEntriesAndBytes();
+        System.out.println("ReplayCacheTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static void replaysCompletedReply() {
+        ReplayCache cache = new ReplayCache();
+        check(cache.begin("1") == null, "kerkesa e re ekzekutohet");
+        ReplayCache.Entry running = cache.begin("1");
+        check(running != null && !running.isDone(), "perseritja gjate ekzekutimit nuk ekzekutohet perseri");
+
+        cache.complete("1", "/upload a.txt aGkK", List.of("OK Uploaded a.txt"));
+        ReplayCache.Entry done = cache.begin("1");
+        check(done != null && done.isDone() && done.responses().equals(List.of("OK Uploaded a.txt")),
+                "perseritja merr pergjigjen e ruajtur");
+
+        cache.complete("missing", "/delete a.txt", List.of("OK File deleted"));
+        check(cache.begin("missing") == null, "complete pa begin nuk krijon hyrje");
+
+        cache.clear();
+        check(cache.size() == 0 && cache.begin("1") == null, "HELLO i ri e pastron cache-in");
+    }
+
+    private static void oversizedReplies() {
+        String big = "x".repeat((int) ServerConfig.REPLAY_MAX_ENTRY_BYTES + 1);
+        ReplayCache cache = new ReplayCache();
+
+        cache.begin("read");
+        cache.complete("read", "/read big.txt", List.of(big));
+        check(cache.begin("read") == null, "leximi i madh ekzekutohet perseri");
+
+        cache.begin("upload");
+        cache.complete("upload", "/upload big.txt aGkK", List.of(big));
+        ReplayCache.Entry upload = cache.begin("upload");
+        check(upload != null && upload.responses().equals(List.of(ReplayCache.TOO_LARGE)),
+                "ndryshimi me pergjigje te madhe nuk ekzekutohet dy here");
+
+        String readBatch = BatchProtocol.encodeRequests(List.of("/info a.txt", "/list"), 4_096).get(0);
+        cache.begin("batch-read");
+        cache.complete("batch-read", readBatch, List.of(big));
+        check(cache.begin("batch-read") == null, "BATCH vetem me lexime ekzekutohet perseri");
+
+        String mixedBatch = BatchProtocol.encodeRequests(List.of("/info a.txt", "/delete a.txt"), 4_096).get(0);
+        cache.begin("batch-mixed");
+        cache.complete("batch-mixed", mixedBatch, List.of(big));
+        ReplayCache.Entry mixed = cache.begin("batch-mixed");
+        check(mixed != null && mixed.responses().equals(List.of(ReplayCache.TOO_LARGE)),
+                "BATCH me /delete nuk ekzekutohet dy here");
+
+        check(ReplayCache.isIdempotent("STATS") && ReplayCache.isIdempotent("/signature a.txt start=3")
+                && !ReplayCache.isIdempotent("/patch a.txt AAAA") && !ReplayCache.isIdempotent("/mtu 1400"),
+                "klasifikimi i komandave");
+    }
+
+    private static void boundsEntriesAndBytes() {
+        ReplayCache cache = new ReplayCache();
+        for (int i = 0; i < ServerConfig.REPLAY_MAX_ENTRIES + 10; i++) {
+            String id = String.valueOf(i);
+            cache.begin(id);
+            cache.complete(id, "/delete f" + i, List.of("OK File deleted"));
+        }
+        check(cache.size() == ServerConfig.REPLAY_MAX_ENTRIES, "kufiri i hyrjeve (" + cache.size() + ")");
+        check(cache.begin("0") == null, "hyrja me e vjeter largohet e para");
+
+        ReplayCache bytes = new ReplayCache();
+        String reply = "y".repeat(60_000);
+        int fit = (int) (ServerConfig.REPLAY_MAX_BYTES / reply.length());
+        for (int i = 0; i <= fit; i++) {
+            String id = "b" + i;
+            bytes.begin(id);
+            bytes.complete(id, "/upload f" + i + " aGkK", List.of(reply));
+        }
+        check(bytes.size() == fit, "kufiri i bajteve per sesion (" + bytes.size() + " hyrje)");
+        ReplayCache.Entry newest = bytes.begin("b" + fit);
+        check(newest != null && newest.isDone(), "hyrja me e re mbetet");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Snapshot-i i sesioneve dhe i totaleve duhet te rikthehet i njejte pas restartit;
+ * sesionet qe do te kishin skaduar dhe formatet e panjohura injorohen.
+ */
+public class StateSnapshotTest {
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        System.exit(run() == 0 ? 0 : 1);
+    }
+
+    public static int run() throws IOException {
+        failures = 0;
+        Path dir = Files.createTempDirectory("snapshot-test");
+        try {
+            roundTrip(dir.resolve("state.bin"));
+            ignoresUnknownFormat(dir.resolve("garbage.bin"));
+            check(StateSnapshot.load(dir.resolve("missing.bin"), new HashMap<>(), new TraficMonitor()) == 0,
+                    "pa snapshot nuk rikthehet asgje");
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println("StateSnapshotTest: " + (failures == 0 ? "OK" : failures + " failure(s)"));
+        return failures;
+    }
+
+    private static void roundTrip(Path file) throws IOException {
+        Map<SocketAddress, ClientSession> sessions = new HashMap<>();
+        InetSocketAddress adminAddress = new InetSocketAddress("127.0.0.1", 40_001);
+        ClientSession admin = new ClientSession(adminAddress);
+        admin.setClientId("client1");
+        admin.setPermission(ClientSession.Permission.ADMIN);
+        admin.markAuthenticated();
+        admin.incrementMessages();
+        admin.incrementMessages();
+        admin.addBytesReceived(120);
+        admin.addBytesSent(4_000);
+        sessions.put(adminAddress, admin);
+
+        InetSocketAddress readerAddress = new InetSocketAddress("::1", 65_535);
+        ClientSession reader = new ClientSession(readerAddress);
+        reader.setClientId("client 2 ë");
+        sessions.put(readerAddress, reader);
+
+        // joaktiv me gjate se CLIENT_TIMEOUT_MS para ruajtjes: nuk rikthehet
+        InetSocketAddress idleAddress = new InetSocketAddress("127.0.0.1", 40_003);
+        sessions.put(idleAddress, new ClientSession(idleAddress, "idle", ClientSession.Permission.ADMIN, true,
+                System.currentTimeMillis() - ServerConfig.CLIENT_TIMEOUT_MS - 1_000, 1, 1, 1));
+
+        TraficMonitor monitor = new TraficMonitor();
+        monitor.addBytesReceived(1_234);
+        monitor.addBatchSent(5_678, 3);
+        StateSnapshot.save(file, sessions, monitor);
+
+        Map<SocketAddress, ClientSession> restored = new HashMap<>();
+        TraficMonitor restoredMonitor = new TraficMonitor();
+        int count = StateSnapshot.load(file, restored, restoredMonitor);
+        check(count == 2 && restored.size() == 2, "rikthehen dy sesionet aktive (" + count + ")");
+        check(!restored.containsKey(idleAddress), "sesioni i skaduar injorohet");
+        check(restoredMonitor.getTotalBytesReceived() == 1_234 && restoredMonitor.getTotalBytesSent() == 5_678,
+                "totalet e trafikut");
+
+        ClientSession back = restored.get(adminAddress);
+        check(back != null && back.getClientId().equals("client1")
+                && back.getPermission() == ClientSession.Permission.ADMIN && back.isAuthenticated()
+                && back.getMessagesCount() == 2 && back.getBytesReceived() == 120 && back.getBytesSent() == 4_000,
+                "fushat e sesionit admin");
+        check(back != null && back.getLastActive() <= System.currentTimeMillis()
+                && back.getLastActive() >= admin.getLastActive(), "koha e pushimit nuk numerohet si inaktivitet");
+
+        ClientSession backReader = restored.get(readerAddress);
+        check(backReader != null && backReader.getClientId().equals("client 2 ë")
+                && backReader.getPermission() == ClientSession.Permission.READ_ONLY && !backReader.isAuthenticated(),
+                "sesioni read-only me adrese IPv6 dhe port 65535");
+    }
+
+    private static void ignoresUnknownFormat(Path file) throws IOException {
+        Files.write(file, new byte[]{1, 2, 3, 4, 0, 0, 0, 1});
+        Map<SocketAddress, ClientSession> restored = new HashMap<>();
+        check(StateSnapshot.load(file, restored, new TraficMonitor()) == 0 && restored.isEmpty(),
+                "formati i panjohur injorohet");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAIL: " + message);
+        }
+    }
+}